@@ -0,0 +1,36 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh")
+}
+
+group = "com.github.theprogmatheus.craftlib"
+version = "1.0.0-SNAPSHOT"
+
+repositories {
+    maven {
+        name = "spigot-api"
+        url = uri("https://hub.spigotmc.org/nexus/content/repositories/snapshots/")
+    }
+}
+
+dependencies {
+    jmh(project(":core"))
+    jmh(project(":bukkit"))
+    // core keeps the resolver as an implementation detail, the resolution benchmark builds its repositories
+    jmh("org.apache.maven.resolver:maven-resolver-api:1.9.15")
+    // the plugin descriptor and shading benchmarks run Bukkit's YAML code outside of a server
+    jmh("org.spigotmc:spigot-api:1.8.8-R0.1-SNAPSHOT")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // e.g. ./gradlew :benchmarks:jmh -Pjmh.includes=FileHashing
+    findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+    resultFormat.set("JSON")
+}
+
+java {
+    toolchain.languageVersion.set(JavaLanguageVersion.of(8))
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
@@ -0,0 +1,111 @@
+package com.github.theprogmatheus.craftlib.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Generates the jars and folders the benchmarks run against, so no suite depends on network access
+ * or on files outside of its own temporary folder.
+ */
+public final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    public static File createTempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory("craftlib-" + prefix).toFile();
+    }
+
+    public static void delete(File folder) throws IOException {
+        if (folder == null || !folder.exists())
+            return;
+
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Writes a jar holding the given entries, in order.
+     */
+    public static File createJar(File jar, Map<String, byte[]> entries) throws IOException {
+        jar.getAbsoluteFile().getParentFile().mkdirs();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Writes a library-like jar of {@code packages * classesPerPackage} class entries under {@code root}.
+     * The entries are random bytes of a typical class size, which is enough for hashing, shading and
+     * resource lookups; nothing is ever defined from them.
+     */
+    public static File createLibraryJar(File jar, String root, int packages, int classesPerPackage, long seed) throws IOException {
+        Random random = new Random(seed);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+        for (int p = 0; p < packages; p++) {
+            for (int c = 0; c < classesPerPackage; c++) {
+                byte[] bytes = new byte[1024 + random.nextInt(3072)];
+                random.nextBytes(bytes);
+                entries.put(root + "/pkg" + p + "/Class" + c + ".class", bytes);
+            }
+        }
+        return createJar(jar, entries);
+    }
+
+    /**
+     * Rewrites a jar without an archive comment so its end of central directory record points to a ZIP64 one,
+     * as archives too large for the plain format have. The entries are left as they are, so the jar reads the
+     * same through {@code ZipFile} and {@code ZipInputStream}, while the raw copy of the shader rejects it.
+     */
+    public static File toZip64(File jar) throws IOException {
+        byte[] bytes = Files.readAllBytes(jar.toPath());
+        ByteBuffer end = ByteBuffer.wrap(bytes, bytes.length - 22, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (end.getInt(0) != 0x06054b50)
+            throw new IOException("End of central directory not found in " + jar);
+
+        long count = end.getShort(10) & 0xFFFF;
+        long directorySize = end.getInt(12) & 0xFFFFFFFFL;
+        long directoryOffset = end.getInt(16) & 0xFFFFFFFFL;
+        long zip64EndOffset = bytes.length - 22;
+
+        ByteBuffer tail = ByteBuffer.allocate(56 + 20 + 22).order(ByteOrder.LITTLE_ENDIAN);
+        // ZIP64 end of central directory record
+        tail.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(count).putLong(count).putLong(directorySize).putLong(directoryOffset);
+        // ZIP64 end of central directory locator
+        tail.putInt(0x07064b50).putInt(0).putLong(zip64EndOffset).putInt(1);
+        // end of central directory record deferring to the ZIP64 one
+        tail.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF).putShort((short) 0xFFFF)
+                .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) 0);
+
+        try (FileOutputStream out = new FileOutputStream(jar)) {
+            out.write(bytes, 0, (int) zip64EndOffset);
+            out.write(tail.array());
+        }
+        return jar;
+    }
+
+    public static String getClassEntry(String root, int packageIndex, int classIndex) {
+        return root + "/pkg" + packageIndex + "/Class" + classIndex + ".class";
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.theprogmatheus.craftlib.benchmarks;
+
+import com.github.theprogmatheus.craftlib.core.classloader.IndexedLibraryClassLoader;
+import com.github.theprogmatheus.craftlib.core.classloader.LibraryIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup latency of library classes through the class loader layouts the loaders produce:
+ * <ul>
+ *     <li>{@code injected}: every library jar added to one {@link URLClassLoader}, searched in turn;</li>
+ *     <li>{@code shaded}: one class loader per jar, searched in turn, as the shards the shade loader writes are
+ *     each loaded by their own plugin classloader;</li>
+ *     <li>{@code indexed}: an {@link IndexedLibraryClassLoader} over the library jars.</li>
+ * </ul>
+ * Lookups go through {@code getResource}, which walks the same path as {@code loadClass} before a class is
+ * defined, without defining it, so every invocation pays the full search. A miss is the common case of a
+ * plugin classloader asked for the classes of other plugins.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLookupBenchmark {
+
+    private static final int PACKAGES = 10;
+    private static final int CLASSES_PER_PACKAGE = 10;
+
+    @Param({"injected", "shaded", "indexed"})
+    public String layout;
+
+    @Param({"30"})
+    public int libraries;
+
+    private File folder;
+    private ClassLoader classLoader;
+    private String firstLibraryEntry;
+    private String lastLibraryEntry;
+    private String missingEntry;
+
+    @Setup
+    public void setup() throws Exception {
+        this.folder = BenchmarkFiles.createTempFolder("lookup");
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < this.libraries; i++)
+            files.add(BenchmarkFiles.createLibraryJar(new File(this.folder, "library-" + i + ".jar"), "lib" + i, PACKAGES, CLASSES_PER_PACKAGE, i));
+
+        this.firstLibraryEntry = BenchmarkFiles.getClassEntry("lib0", PACKAGES / 2, CLASSES_PER_PACKAGE / 2);
+        this.lastLibraryEntry = BenchmarkFiles.getClassEntry("lib" + (this.libraries - 1), PACKAGES / 2, CLASSES_PER_PACKAGE / 2);
+        this.missingEntry = "org/example/plugin/Missing.class";
+
+        switch (this.layout) {
+            case "injected":
+                this.classLoader = new URLClassLoader(toURLs(files), null);
+                break;
+            case "shaded":
+                this.classLoader = new ShardClassLoader(files);
+                break;
+            case "indexed":
+                LibraryIndex index = LibraryIndex.load(new File(this.folder, "libraries.index"));
+                this.classLoader = new IndexedLibraryClassLoader(null, files, index);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown layout: " + this.layout);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (this.classLoader instanceof Closeable)
+            ((Closeable) this.classLoader).close();
+        BenchmarkFiles.delete(this.folder);
+    }
+
+    @Benchmark
+    public URL hitFirstLibrary() {
+        return this.classLoader.getResource(this.firstLibraryEntry);
+    }
+
+    @Benchmark
+    public URL hitLastLibrary() {
+        return this.classLoader.getResource(this.lastLibraryEntry);
+    }
+
+    @Benchmark
+    public URL miss() {
+        return this.classLoader.getResource(this.missingEntry);
+    }
+
+    private static URL[] toURLs(List<File> files) throws IOException {
+        URL[] urls = new URL[files.size()];
+        for (int i = 0; i < urls.length; i++)
+            urls[i] = files.get(i).toURI().toURL();
+        return urls;
+    }
+
+    /**
+     * Searches the class loader of every shard in turn, as the server does for the classes of other plugins.
+     */
+    private static class ShardClassLoader extends ClassLoader implements Closeable {
+
+        private final List<URLClassLoader> shards = new ArrayList<>();
+
+        private ShardClassLoader(List<File> files) throws IOException {
+            super(null);
+            for (File file : files)
+                this.shards.add(new URLClassLoader(new URL[]{file.toURI().toURL()}, null));
+        }
+
+        @Override
+        protected URL findResource(String name) {
+            for (URLClassLoader shard : this.shards) {
+                URL url = shard.findResource(name);
+                if (url != null)
+                    return url;
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (URLClassLoader shard : this.shards)
+                shard.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.theprogmatheus.craftlib.benchmarks;
+
+import com.github.theprogmatheus.craftlib.core.maven.MavenDependencyResolver;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a generated dependency graph from a {@code file://} repository: an application artifact depending
+ * on {@code modules} libraries, which all depend on one common base library.
+ * <p>
+ * The cold run resolves into an empty local repository, so every pom and jar is transferred and checked;
+ * the warm run resolves against a filled one, as on every boot after the first.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DependencyResolutionBenchmark {
+
+    private static final String GROUP_ID = "com.github.theprogmatheus.bench";
+    private static final String VERSION = "1.0.0";
+    private static final String ROOT_COORDINATES = GROUP_ID + ":app:" + VERSION;
+
+    @Param({"5", "25"})
+    public int modules;
+
+    private File folder;
+    private RemoteRepository repository;
+    private MavenDependencyResolver warmResolver;
+    private File coldLocalRepository;
+    private MavenDependencyResolver coldResolver;
+
+    @Setup
+    public void setup() throws Exception {
+        this.folder = BenchmarkFiles.createTempFolder("resolution");
+        File remote = new File(this.folder, "remote");
+        this.repository = new RemoteRepository.Builder("bench", "default", remote.toURI().toString()).build();
+
+        deploy(remote, "base", Collections.emptyList());
+        List<String> moduleIds = new ArrayList<>();
+        for (int i = 0; i < this.modules; i++) {
+            String artifactId = "module-" + i;
+            deploy(remote, artifactId, Collections.singletonList("base"));
+            moduleIds.add(artifactId);
+        }
+        deploy(remote, "app", moduleIds);
+
+        this.warmResolver = newResolver(new File(this.folder, "warm"));
+        this.warmResolver.resolveDependencies(ROOT_COORDINATES);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupColdRun() {
+        // contexts are kept per local repository for the whole fork, so every cold run gets a folder no context has seen
+        this.coldLocalRepository = new File(this.folder, "cold-" + System.nanoTime());
+        this.coldResolver = newResolver(this.coldLocalRepository);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownColdRun() throws IOException {
+        BenchmarkFiles.delete(this.coldLocalRepository);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(this.folder);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public List<File> cold() throws Exception {
+        return this.coldResolver.resolveDependencies(ROOT_COORDINATES);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public List<File> warm() throws Exception {
+        return this.warmResolver.resolveDependencies(ROOT_COORDINATES);
+    }
+
+    private MavenDependencyResolver newResolver(File localRepository) {
+        return new MavenDependencyResolver(MavenResolverContext.of(localRepository), Collections.singletonList(this.repository));
+    }
+
+    private static void deploy(File remote, String artifactId, List<String> dependencies) throws Exception {
+        File versionFolder = new File(remote, GROUP_ID.replace('.', '/') + "/" + artifactId + "/" + VERSION);
+        versionFolder.mkdirs();
+        String baseName = artifactId + "-" + VERSION;
+
+        StringBuilder pom = new StringBuilder()
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <groupId>").append(GROUP_ID).append("</groupId>\n")
+                .append("  <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("  <version>").append(VERSION).append("</version>\n")
+                .append("  <dependencies>\n");
+        for (String dependency : dependencies) {
+            pom.append("    <dependency><groupId>").append(GROUP_ID).append("</groupId><artifactId>")
+                    .append(dependency).append("</artifactId><version>").append(VERSION).append("</version></dependency>\n");
+        }
+        pom.append("  </dependencies>\n</project>\n");
+
+        File pomFile = new File(versionFolder, baseName + ".pom");
+        Files.write(pomFile.toPath(), pom.toString().getBytes(StandardCharsets.UTF_8));
+        writeChecksum(pomFile);
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(artifactId.replace('-', '/') + "/Marker.class", new byte[512]);
+        writeChecksum(BenchmarkFiles.createJar(new File(versionFolder, baseName + ".jar"), entries));
+    }
+
+    private static void writeChecksum(File file) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(file.toPath()));
+        Files.write(new File(file.getPath() + ".sha1").toPath(), FileUtils.toHexString(digest).getBytes(StandardCharsets.US_ASCII));
+    }
+}
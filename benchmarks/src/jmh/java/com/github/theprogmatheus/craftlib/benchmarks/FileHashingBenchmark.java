@@ -0,0 +1,56 @@
+package com.github.theprogmatheus.craftlib.benchmarks;
+
+import com.github.theprogmatheus.craftlib.core.utils.FileHashCache;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes a library set the way the shade and injection loaders do to detect changed libraries,
+ * reading every file versus answering from a warm {@link FileHashCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileHashingBenchmark {
+
+    @Param({"10", "50"})
+    public int libraries;
+
+    private File folder;
+    private List<File> files;
+    private FileHashCache warmCache;
+
+    @Setup
+    public void setup() throws Exception {
+        this.folder = BenchmarkFiles.createTempFolder("hashing");
+        this.files = new ArrayList<>();
+        for (int i = 0; i < this.libraries; i++)
+            this.files.add(BenchmarkFiles.createLibraryJar(new File(this.folder, "library-" + i + ".jar"), "lib" + i, 8, 16, i));
+
+        this.warmCache = FileHashCache.load(new File(this.folder, "hashes.cache"));
+        FileUtils.hashFiles(this.files, this.warmCache);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkFiles.delete(this.folder);
+    }
+
+    @Benchmark
+    public String uncached() throws Exception {
+        return FileUtils.hashFiles(this.files);
+    }
+
+    @Benchmark
+    public String cached() throws Exception {
+        return FileUtils.hashFiles(this.files, this.warmCache);
+    }
+}
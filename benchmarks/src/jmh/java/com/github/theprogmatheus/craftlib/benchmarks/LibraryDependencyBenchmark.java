@@ -0,0 +1,38 @@
+package com.github.theprogmatheus.craftlib.benchmarks;
+
+import com.github.theprogmatheus.craftlib.core.LibraryDependency;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and formats the coordinates declared in every plugin.yml, once per library on each boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryDependencyBenchmark {
+
+    @Param({"com.google.guava:guava:33.2.1-jre", "org.xerial:sqlite-jdbc:3.46.0.0-SNAPSHOT"})
+    public String coordinates;
+
+    private LibraryDependency dependency;
+
+    @Setup
+    public void setup() {
+        this.dependency = LibraryDependency.fromCoordinates(this.coordinates);
+    }
+
+    @Benchmark
+    public LibraryDependency fromCoordinates() {
+        return LibraryDependency.fromCoordinates(this.coordinates);
+    }
+
+    @Benchmark
+    public String toCoordinates() {
+        return this.dependency.toCoordinates();
+    }
+}
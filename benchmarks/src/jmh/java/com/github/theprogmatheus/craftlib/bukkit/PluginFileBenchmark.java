@@ -0,0 +1,71 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.benchmarks.BenchmarkFiles;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the plugin.yml of a plugin jar, which the tracker does for every jar in the plugins folder on each boot:
+ * parsing the whole plugin.yml, reading only the descriptor fields, and finding them in a warm descriptor cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginFileBenchmark {
+
+    @Param({"10"})
+    public int libraries;
+
+    private File folder;
+    private File pluginJar;
+    private PluginDescriptorCache descriptorCache;
+
+    @Setup
+    public void setup() throws Exception {
+        this.folder = BenchmarkFiles.createTempFolder("plugin-file");
+
+        StringBuilder yaml = new StringBuilder("name: BenchPlugin\nversion: 1.0.0\nmain: org.example.BenchPlugin\n")
+                .append("craftlib:\n  repositories:\n    - https://repo.maven.apache.org/maven2/\n  libraries:\n");
+        for (int i = 0; i < this.libraries; i++)
+            yaml.append("    - org.example:library-").append(i).append(":1.0.").append(i).append('\n');
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("plugin.yml", yaml.toString().getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 200; i++)
+            entries.put("org/example/BenchPlugin" + i + ".class", new byte[2048]);
+        this.pluginJar = BenchmarkFiles.createJar(new File(this.folder, "BenchPlugin.jar"), entries);
+
+        this.descriptorCache = PluginDescriptorCache.load(new File(this.folder, "plugins.descriptors"));
+        this.descriptorCache.get(this.pluginJar);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(this.folder);
+    }
+
+    @Benchmark
+    public YamlConfiguration getPluginYaml() {
+        return new PluginFile(this.pluginJar).getPluginYaml();
+    }
+
+    @Benchmark
+    public int getDependencies() {
+        return new PluginFile(this.pluginJar).getDependencies().size();
+    }
+
+    @Benchmark
+    public int getDependenciesCached() {
+        return new PluginFile(this.pluginJar, this.descriptorCache).getDependencies().size();
+    }
+}
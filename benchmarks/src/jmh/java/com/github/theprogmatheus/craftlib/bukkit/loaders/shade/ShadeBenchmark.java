@@ -0,0 +1,114 @@
+package com.github.theprogmatheus.craftlib.bukkit.loaders.shade;
+
+import com.github.theprogmatheus.craftlib.benchmarks.BenchmarkFiles;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the shade jar of a generated library set, from scratch and when the existing jar is up to date.
+ * Lives in the shader's package, which keeps {@link PluginLibraryShader} package-private.
+ * <p>
+ * Plain libraries are copied still compressed; ZIP64 libraries cannot be, so their entries are inflated and
+ * deflated again, which is the only path {@code parallelCompression} applies to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShadeBenchmark {
+
+    private static final String PLUGIN_YML = "name: CraftLib\nversion: 1.0.0\nmain: com.github.theprogmatheus.craftlib.bukkit.Main\n";
+
+    @Param({"20"})
+    public int libraries;
+
+    @Param({"plain", "zip64"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean parallelCompression;
+
+    private File folder;
+    private File shadeJar;
+    private List<File> files;
+    private Plugin plugin;
+    private ExecutorService compressionExecutor;
+
+    @Setup
+    public void setup() throws Exception {
+        this.folder = BenchmarkFiles.createTempFolder("shade");
+        this.shadeJar = new File(this.folder, "CraftLibs.jar");
+        this.files = new ArrayList<>();
+        for (int i = 0; i < this.libraries; i++) {
+            File file = BenchmarkFiles.createLibraryJar(new File(this.folder, "library-" + i + ".jar"), "lib" + i, 8, 16, i);
+            this.files.add("zip64".equals(this.format) ? BenchmarkFiles.toZip64(file) : file);
+        }
+
+        // the shader only reads the plugin.yml of the plugin it shades for
+        this.plugin = (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[]{Plugin.class},
+                (proxy, method, args) -> "getResource".equals(method.getName())
+                        ? new ByteArrayInputStream(PLUGIN_YML.getBytes(StandardCharsets.UTF_8))
+                        : null);
+        if (this.parallelCompression)
+            this.compressionExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (this.compressionExecutor != null)
+            this.compressionExecutor.shutdownNow();
+        BenchmarkFiles.delete(this.folder);
+    }
+
+    @Benchmark
+    public File shade(FreshShade fresh) throws Exception {
+        return newShader().shade();
+    }
+
+    @Benchmark
+    public File upToDate(ExistingShade existing) throws Exception {
+        return newShader().shade();
+    }
+
+    private PluginLibraryShader newShader() throws Exception {
+        return new PluginLibraryShader(this.plugin, this.shadeJar, "CraftLibs", this.files, null, this.compressionExecutor);
+    }
+
+    /**
+     * Removes the shade jar before every invocation, so it is written in full.
+     */
+    @State(Scope.Thread)
+    public static class FreshShade {
+
+        @Setup(Level.Invocation)
+        public void setup(ShadeBenchmark benchmark) {
+            benchmark.shadeJar.delete();
+        }
+    }
+
+    /**
+     * Writes the shade jar once, so every invocation only checks its hash.
+     */
+    @State(Scope.Thread)
+    public static class ExistingShade {
+
+        @Setup(Level.Trial)
+        public void setup(ShadeBenchmark benchmark) throws Exception {
+            benchmark.shadeJar.delete();
+            benchmark.newShader().shade();
+        }
+    }
+}
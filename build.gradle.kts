@@ -1,6 +1,7 @@
 plugins {
     id("java")
     id("com.gradleup.shadow") version "8.3.8" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 group = "com.github.theprogmatheus.craftlib"
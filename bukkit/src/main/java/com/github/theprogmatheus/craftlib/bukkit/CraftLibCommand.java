@@ -0,0 +1,89 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.maven.NegativeLookupCache;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+@RequiredArgsConstructor
+public class CraftLibCommand implements TabExecutor {
+
+    private static final List<String> SUBCOMMANDS = Arrays.asList("invalidate", "stats");
+
+    private final JavaPlugin plugin;
+    private final PluginLibraryTracker tracker;
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 0)
+            return false;
+
+        if (args[0].equalsIgnoreCase("invalidate") && args.length <= 2) {
+            invalidate(sender, args.length == 2 ? args[1] : null);
+            return true;
+        }
+        if (args[0].equalsIgnoreCase("stats") && args.length == 1) {
+            stats(sender);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length != 1)
+            return Collections.emptyList();
+
+        List<String> completions = new ArrayList<>();
+        for (String subcommand : SUBCOMMANDS) {
+            if (subcommand.startsWith(args[0].toLowerCase()))
+                completions.add(subcommand);
+        }
+        return completions;
+    }
+
+    private void stats(CommandSender sender) {
+        MavenResolverContext context = this.tracker != null ? this.tracker.getContext() : null;
+        if (context == null) {
+            sender.sendMessage("No plugin declared libraries, there are no metrics.");
+            return;
+        }
+        context.getMetrics().report().forEach(sender::sendMessage);
+    }
+
+    private void invalidate(CommandSender sender, String groupIdPrefix) {
+        File file = new File(this.plugin.getDataFolder(), PluginLibraryTracker.NEGATIVE_CACHE_NAME);
+
+        // without a running context (no plugin declared libraries), only the saved misses exist
+        MavenResolverContext context = this.tracker != null ? this.tracker.getContext() : null;
+        NegativeLookupCache cache;
+        if (context != null)
+            cache = context.getNegativeLookupCache();
+        else {
+            cache = new NegativeLookupCache(0);
+            cache.load(file);
+        }
+
+        int removed = cache.invalidate(groupIdPrefix);
+        try {
+            cache.save(file);
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not save the repository misses.", e);
+        }
+
+        sender.sendMessage(groupIdPrefix == null
+                ? String.format("Forgot %s repository misses.", removed)
+                : String.format("Forgot %s repository misses for groupIds starting with '%s'.", removed, groupIdPrefix));
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.core.LibraryResolver;
+import com.github.theprogmatheus.craftlib.core.maven.MavenMirrorServer;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverSettings;
+import lombok.Getter;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+@Getter
+public class CraftLibConfig {
+
+    public static final String LOADER_AUTO = "auto";
+    public static final String LOADER_INJECT = "inject";
+    public static final String LOADER_INDEXED = "indexed";
+    public static final String LOADER_SHADE = "shade";
+
+    private final String loader;
+    private final boolean sharedLibraries;
+    private final boolean classDataSharing;
+    private final int resolverThreads;
+    private final boolean unifiedGraph;
+    private final boolean lockfile;
+    private final boolean watchPlugins;
+    private final File sharedCache;
+    private final File blobStore;
+    private final int shadeThreads;
+    private final boolean mirror;
+    private final String mirrorAddress;
+    private final int mirrorPort;
+    private final long mirrorMetadataTtl;
+    private final MavenResolverSettings resolverSettings;
+
+    public CraftLibConfig(FileConfiguration config, Logger logger) {
+        this.loader = readLoader(config, logger);
+        this.sharedLibraries = config.getBoolean("shared-libraries", false);
+        this.classDataSharing = config.getBoolean("class-data-sharing", false);
+        this.resolverThreads = config.getInt("resolver.threads", 0);
+        this.unifiedGraph = config.getBoolean("resolver.unified-graph", false);
+        this.lockfile = config.getBoolean("resolver.lockfile", true);
+        this.watchPlugins = config.getBoolean("resolver.watch-plugins", false);
+        String sharedCache = config.getString("resolver.shared-cache", "").trim();
+        this.sharedCache = sharedCache.isEmpty() ? null : new File(sharedCache);
+        String blobStore = config.getString("resolver.blob-store", "").trim();
+        this.blobStore = blobStore.isEmpty() ? null : new File(blobStore);
+        this.shadeThreads = config.getInt("shade.threads", 0);
+        this.mirror = config.getBoolean("mirror.enabled", false);
+        this.mirrorAddress = config.getString("mirror.address", "127.0.0.1");
+        this.mirrorPort = config.getInt("mirror.port", MavenMirrorServer.DEFAULT_PORT);
+        this.mirrorMetadataTtl = Math.max(0, config.getLong("mirror.metadata-ttl", 10));
+        this.resolverSettings = loadResolverSettings(config, logger);
+        this.resolverSettings.setSharedRepository(this.sharedCache != null);
+    }
+
+    /**
+     * @return the local repository libraries are resolved into: the shared cache, or the one of this server
+     */
+    public File getLibrariesFolder(File dataFolder) {
+        return this.sharedCache != null ? this.sharedCache : LibraryResolver.getLibrariesFolder(dataFolder);
+    }
+
+    public int getEffectiveResolverThreads(int tasks) {
+        int threads = this.resolverThreads > 0
+                ? this.resolverThreads
+                : Math.max(2, Runtime.getRuntime().availableProcessors());
+        return Math.max(1, Math.min(threads, tasks));
+    }
+
+    public int getEffectiveShadeThreads() {
+        return this.shadeThreads > 0 ? this.shadeThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static MavenResolverSettings loadResolverSettings(FileConfiguration config, Logger logger) {
+        MavenResolverSettings settings = new MavenResolverSettings();
+        settings.setOfflineFirst(config.getBoolean("resolver.offline-first", false));
+        settings.setDownloadThreads(Math.max(1, config.getInt("resolver.download-threads", settings.getDownloadThreads())));
+        settings.setUpdatePolicy(readUpdatePolicy(config.getString("resolver.update-policy"), "resolver.update-policy", settings.getUpdatePolicy(), logger));
+        settings.setChecksumPolicy(readChecksumPolicy(config.getString("resolver.checksum-policy"), "resolver.checksum-policy", settings.getChecksumPolicy(), logger));
+        settings.setNegativeCacheTtl(Math.max(0, config.getLong("resolver.negative-cache-ttl", settings.getNegativeCacheTtl())));
+        settings.setSnapshotMetadataTtl(Math.max(0, config.getLong("resolver.snapshot-metadata-ttl", settings.getSnapshotMetadataTtl())));
+        settings.setLatencyOrdering(config.getBoolean("resolver.latency-ordering", settings.isLatencyOrdering()));
+        settings.setLazyArtifacts(config.getBoolean("lazy-libraries", settings.isLazyArtifacts()));
+        String mirrorUrl = config.getString("resolver.mirror", "").trim();
+        settings.setMirrorUrl(mirrorUrl.isEmpty() ? null : mirrorUrl);
+
+        // a list of entries rather than a section, since groupId patterns contain Bukkit's path separator
+        for (Map<?, ?> route : config.getMapList("resolver.routes")) {
+            Object group = route.get("group");
+            Object repositories = route.get("repositories");
+            if (!(group instanceof String) || !(repositories instanceof List)) {
+                logger.warning(String.format("Invalid repository route '%s', expected a group and a list of repositories.", route));
+                continue;
+            }
+            List<String> targets = new ArrayList<>();
+            ((List<?>) repositories).forEach(repository -> targets.add(String.valueOf(repository)));
+            settings.getRoutes().put((String) group, targets);
+        }
+
+        // a list as well, since repository URLs contain Bukkit's path separator
+        for (Map<?, ?> policy : config.getMapList("resolver.repository-policies")) {
+            Object repository = policy.get("repository");
+            if (!(repository instanceof String)) {
+                logger.warning(String.format("Invalid repository policy '%s', expected a repository name or URL.", policy));
+                continue;
+            }
+            String location = "resolver.repository-policies[" + repository + "]";
+            settings.getRepositoryPolicies().put((String) repository, new MavenResolverSettings.RepositorySettings(
+                    readUpdatePolicy(asString(policy.get("update-policy")), location, null, logger),
+                    readChecksumPolicy(asString(policy.get("checksum-policy")), location, null, logger)
+            ));
+        }
+        return settings;
+    }
+
+    private static String readLoader(FileConfiguration config, Logger logger) {
+        String loader = config.getString("loader", LOADER_AUTO).toLowerCase();
+        switch (loader) {
+            case LOADER_AUTO:
+            case LOADER_INJECT:
+            case LOADER_INDEXED:
+            case LOADER_SHADE:
+                return loader;
+            default:
+                logger.warning(String.format("Invalid loader '%s', expected auto, inject, indexed or shade.", loader));
+                return LOADER_AUTO;
+        }
+    }
+
+    private static String asString(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    private static String readUpdatePolicy(String policy, String path, String def, Logger logger) {
+        if (policy == null)
+            return def;
+        if (MavenResolverSettings.isValidUpdatePolicy(policy))
+            return policy;
+
+        logger.warning(String.format("Invalid update policy '%s' at '%s', expected never, always, daily or interval:<minutes>.", policy, path));
+        return def;
+    }
+
+    private static String readChecksumPolicy(String policy, String path, String def, Logger logger) {
+        if (policy == null)
+            return def;
+        if (MavenResolverSettings.isValidChecksumPolicy(policy))
+            return policy;
+
+        logger.warning(String.format("Invalid checksum policy '%s' at '%s', expected fail, warn or ignore.", policy, path));
+        return def;
+    }
+}
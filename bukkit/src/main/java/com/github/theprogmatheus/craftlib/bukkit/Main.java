@@ -1,18 +1,37 @@
 package com.github.theprogmatheus.craftlib.bukkit;
 
+import com.github.theprogmatheus.craftlib.bukkit.loaders.LibraryLoaderImpl;
 import com.github.theprogmatheus.craftlib.bukkit.loaders.classloader.ClassLoaderLibraryLoader;
+import com.github.theprogmatheus.craftlib.bukkit.loaders.indexed.IndexedLibraryLoader;
 import com.github.theprogmatheus.craftlib.bukkit.loaders.shade.ShadeLibraryLoader;
 import com.github.theprogmatheus.craftlib.core.LibraryLoader;
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import com.github.theprogmatheus.craftlib.core.classloader.ClassDataSharing;
+import com.github.theprogmatheus.craftlib.core.maven.MavenMirrorServer;
 import com.github.theprogmatheus.util.JGRUChecker;
 import org.bukkit.Bukkit;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import javax.management.JMException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Main extends JavaPlugin {
 
     private boolean loaded;
     private JGRUChecker updateChecker;
+    private PluginLibraryTracker tracker;
+    private LibraryLoader<PluginFile> libraryLoader;
+    private CraftLibConfig config;
+    private PluginFolderWatcher folderWatcher;
+    private MavenMirrorServer mirror;
 
     @Override
     public void onLoad() {
@@ -23,17 +42,119 @@ public class Main extends JavaPlugin {
 
     @Override
     public void onEnable() {
+        registerCommands();
+        reportSharedLibraries();
         checkNewUpdates();
+        if (this.config.isWatchPlugins())
+            watchPluginsFolder();
+        if (this.config.isMirror())
+            startMirror();
+    }
+
+    @Override
+    public void onDisable() {
+        if (this.mirror != null) {
+            this.mirror.close();
+            this.mirror = null;
+        }
+        if (this.folderWatcher != null) {
+            try {
+                this.folderWatcher.close();
+            } catch (IOException ignored) {
+            }
+            this.folderWatcher = null;
+        }
     }
 
     private void checkLibraries() {
-        LibraryLoader<PluginFile> libraryLoader;
+        saveDefaultConfig();
+        CraftLibConfig config = new CraftLibConfig(getConfig(), getLogger());
+        this.config = config;
+        LibraryLoaderImpl libraryLoader = createLibraryLoader(config);
+        libraryLoader.setLibrariesFolder(config.getLibrariesFolder(getDataFolder()));
+        this.libraryLoader = libraryLoader;
+        if (config.getResolverSettings().isLazyArtifacts() && !(this.libraryLoader instanceof IndexedLibraryLoader)) {
+            getLogger().warning("Lazy libraries need the indexed loader, every library is fetched at boot.");
+            config.getResolverSettings().setLazyArtifacts(false);
+        }
+        this.tracker = new PluginLibraryTracker(this, this.libraryLoader, config);
+        this.tracker.run();
+        registerMetrics();
+
+        if (config.isClassDataSharing())
+            checkClassDataSharing();
+    }
 
-        if (ClassLoaderLibraryLoader.isAvailable())
-            libraryLoader = new ClassLoaderLibraryLoader(this);
-        else {
-            libraryLoader = new ShadeLibraryLoader(this);
+    private void registerMetrics() {
+        if (this.tracker.getContext() == null)
+            return;
 
+        try {
+            this.tracker.getContext().getMetrics().register();
+        } catch (JMException e) {
+            getLogger().log(Level.WARNING, "Could not register the CraftLib metrics in JMX.", e);
+        }
+    }
+
+    private void watchPluginsFolder() {
+        // nothing was resolved at boot, e.g. without a plugins folder
+        if (this.tracker.getContext() == null)
+            return;
+
+        PluginFolderWatcher watcher = new PluginFolderWatcher(this, PluginLibraryTracker.PLUGINS_FOLDER, this.tracker.getContext(),
+                this.tracker.getLockfile(), this.tracker.getDescriptorCache());
+        try {
+            watcher.start();
+            this.folderWatcher = watcher;
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Could not watch the plugins folder for new plugins.", e);
+        }
+    }
+
+    private void startMirror() {
+        File localRepository = this.config.getLibrariesFolder(getDataFolder());
+        MavenMirrorServer mirror = new MavenMirrorServer(localRepository, LibraryRepository.ALL,
+                TimeUnit.MINUTES.toMillis(this.config.getMirrorMetadataTtl()), getLogger());
+        try {
+            mirror.start(new InetSocketAddress(this.config.getMirrorAddress(), this.config.getMirrorPort()),
+                    Runtime.getRuntime().availableProcessors() * 4);
+            this.mirror = mirror;
+            if (this.tracker.getContext() != null)
+                this.tracker.getContext().getMetrics().registerCache("mirror", mirror.getStatistics());
+            getLogger().info(String.format("Serving the libraries repository as a mirror on %s.", mirror.getAddress()));
+        } catch (IOException | RuntimeException e) {
+            getLogger().log(Level.WARNING, "Could not start the libraries mirror.", e);
+        }
+    }
+
+    private void checkClassDataSharing() {
+        Set<File> libraryFiles = new LinkedHashSet<>();
+        this.tracker.getLibraries().values().forEach(libraryFiles::addAll);
+        new ClassDataSharing(getDataFolder(), getLogger()).check(libraryFiles);
+    }
+
+    private LibraryLoaderImpl createLibraryLoader(CraftLibConfig config) {
+        String loader = config.getLoader();
+        boolean auto = CraftLibConfig.LOADER_AUTO.equals(loader);
+
+        // the shared library layer and lazy libraries are only possible with the indexed loader
+        boolean needsIndexed = config.isSharedLibraries() || config.getResolverSettings().isLazyArtifacts();
+        if (auto && needsIndexed && IndexedLibraryLoader.isAvailable())
+            return new IndexedLibraryLoader(this, config.isSharedLibraries());
+
+        if ((auto || CraftLibConfig.LOADER_INJECT.equals(loader)) && ClassLoaderLibraryLoader.isAvailable()) {
+            if (config.isSharedLibraries())
+                getLogger().warning("Shared libraries need the indexed loader, every plugin keeps its own libraries.");
+            return new ClassLoaderLibraryLoader(this);
+        }
+
+        if ((auto || CraftLibConfig.LOADER_INDEXED.equals(loader)) && IndexedLibraryLoader.isAvailable())
+            return new IndexedLibraryLoader(this, config.isSharedLibraries());
+
+        if (!auto && !CraftLibConfig.LOADER_SHADE.equals(loader))
+            getLogger().warning(String.format("The '%s' loader is not supported by this server, falling back to the shaded plugin loader.", loader));
+
+        if (!CraftLibConfig.LOADER_SHADE.equals(loader)) {
             getLogger().warning("------------------------------------------------------------");
             getLogger().warning("Your Java version has restricted access to the ClassLoader.addURL method.");
             getLogger().warning("CraftLib will fallback to the shaded plugin loader.");
@@ -47,7 +168,23 @@ public class Main extends JavaPlugin {
             getLogger().warning("This will allow CraftLib to dynamically inject libraries at runtime.");
             getLogger().warning("------------------------------------------------------------");
         }
-        new PluginLibraryTracker(this, libraryLoader).run();
+        return new ShadeLibraryLoader(this, config.getEffectiveShadeThreads());
+    }
+
+    private void reportSharedLibraries() {
+        if (this.libraryLoader instanceof IndexedLibraryLoader)
+            // after the first tick, once every plugin is enabled and has loaded its classes
+            Bukkit.getScheduler().runTask(this, ((IndexedLibraryLoader) this.libraryLoader)::reportSharedLayer);
+    }
+
+    private void registerCommands() {
+        PluginCommand command = getCommand("craftlib");
+        if (command == null)
+            return;
+
+        CraftLibCommand executor = new CraftLibCommand(this, this.tracker);
+        command.setExecutor(executor);
+        command.setTabCompleter(executor);
     }
 
     private void checkNewUpdates() {
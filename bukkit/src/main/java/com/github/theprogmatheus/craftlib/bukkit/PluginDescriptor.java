@@ -0,0 +1,76 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.core.utils.RawZipFile;
+import lombok.Data;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The plugin.yml fields CraftLib reads from a plugin jar.
+ */
+@Data
+public class PluginDescriptor {
+
+    public static final String PLUGIN_YML = "plugin.yml";
+
+    /**
+     * The descriptor of a jar without a readable plugin.yml.
+     */
+    public static final PluginDescriptor NONE = new PluginDescriptor(null, null, Collections.emptyList(), Collections.emptyList());
+
+    private final String name;
+    private final String shadeHash;
+    private final List<String> repositories;
+    private final List<String> libraries;
+
+    /**
+     * Reads the descriptor of a jar, extracting only its plugin.yml entry.
+     *
+     * @param jar the plugin jar
+     * @return the descriptor, or {@link #NONE} if the jar has no readable plugin.yml
+     */
+    public static PluginDescriptor read(File jar) {
+        YamlConfiguration yaml = readPluginYaml(jar);
+        if (yaml == null)
+            return NONE;
+
+        List<String> libraries = yaml.getStringList("craftlib.libraries");
+        if (libraries == null)
+            libraries = yaml.getStringList("libraries");
+
+        return new PluginDescriptor(yaml.getString("name"), yaml.getString("shade-hash"),
+                copyOf(yaml.getStringList("craftlib.repositories")), copyOf(libraries));
+    }
+
+    /**
+     * Parses the plugin.yml of a jar, extracting only that entry.
+     *
+     * @param jar the plugin jar
+     * @return the parsed plugin.yml, or null if the jar has no readable plugin.yml
+     */
+    public static YamlConfiguration readPluginYaml(File jar) {
+        try {
+            byte[] data = RawZipFile.readEntry(jar, PLUGIN_YML);
+            if (data == null)
+                return null;
+
+            return YamlConfiguration.loadConfiguration(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    private static List<String> copyOf(List<String> values) {
+        return values == null || values.isEmpty()
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the {@link PluginDescriptor} of every plugin jar, so unchanged jars are neither opened nor
+ * their plugin.yml parsed again.
+ * <p>
+ * A descriptor is keyed by the jar's absolute path and only reused while the jar keeps the same size and
+ * modification time. Jars without a plugin.yml are remembered too.
+ */
+public class PluginDescriptorCache {
+
+    private static final String HEADER = "# CraftLib plugin descriptor cache v1 - generated, do not edit";
+
+    @Getter
+    private final File file;
+    private final Map<String, CachedDescriptor> descriptors = new ConcurrentHashMap<>();
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private PluginDescriptorCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the cache from disk. A missing or unreadable cache results in an empty one.
+     *
+     * @param file the cache location
+     * @return the loaded cache
+     */
+    public static PluginDescriptorCache load(File file) {
+        PluginDescriptorCache cache = new PluginDescriptorCache(file);
+        if (!file.isFile())
+            return cache;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                // path, size, modified, name, shade-hash, repository count, repositories..., libraries...
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 6)
+                    continue;
+                try {
+                    int repositoryCount = Integer.parseInt(parts[5]);
+                    if (repositoryCount < 0 || 6 + repositoryCount > parts.length)
+                        continue;
+
+                    List<String> repositories = Arrays.asList(parts).subList(6, 6 + repositoryCount);
+                    List<String> libraries = Arrays.asList(parts).subList(6 + repositoryCount, parts.length);
+                    PluginDescriptor descriptor = new PluginDescriptor(decode(parts[3]), decode(parts[4]),
+                            Collections.unmodifiableList(new ArrayList<>(repositories)),
+                            Collections.unmodifiableList(new ArrayList<>(libraries)));
+                    cache.descriptors.put(parts[0], new CachedDescriptor(Long.parseLong(parts[1]), Long.parseLong(parts[2]), descriptor));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+            cache.descriptors.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the descriptor of a jar, reading it only when the jar changed since it was cached.
+     *
+     * @param jar the plugin jar
+     * @return the descriptor, or {@link PluginDescriptor#NONE} if the jar has no readable plugin.yml
+     */
+    public PluginDescriptor get(File jar) {
+        String path = jar.getAbsolutePath();
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        CachedDescriptor cached = this.descriptors.get(path);
+        if (this.statistics.record(cached != null && cached.size == size && cached.lastModified == lastModified))
+            return cached.descriptor;
+
+        PluginDescriptor descriptor = PluginDescriptor.read(jar);
+        if (isStorable(descriptor))
+            this.descriptors.put(path, new CachedDescriptor(size, lastModified, descriptor));
+        return descriptor;
+    }
+
+    /**
+     * Keeps only the given jars, dropping the plugins that were removed.
+     *
+     * @param jars the jars to keep
+     */
+    public void retain(Collection<File> jars) {
+        Set<String> paths = new HashSet<>();
+        jars.forEach(jar -> paths.add(jar.getAbsolutePath()));
+        this.descriptors.keySet().retainAll(paths);
+    }
+
+    /**
+     * Writes the cache to disk, replacing the previous one atomically.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    public synchronized void save() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        File temp = new File(parent, this.file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, CachedDescriptor> entry : new TreeMap<>(this.descriptors).entrySet()) {
+                CachedDescriptor cached = entry.getValue();
+                PluginDescriptor descriptor = cached.descriptor;
+                StringJoiner line = new StringJoiner("\t");
+                line.add(entry.getKey()).add(String.valueOf(cached.size)).add(String.valueOf(cached.lastModified))
+                        .add(encode(descriptor.getName())).add(encode(descriptor.getShadeHash()))
+                        .add(String.valueOf(descriptor.getRepositories().size()));
+                descriptor.getRepositories().forEach(line::add);
+                descriptor.getLibraries().forEach(line::add);
+                writer.write(line.toString());
+                writer.write('\n');
+            }
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Values holding a tab or line break cannot be written in the cache format; such rare
+     * descriptors are simply read again on every start.
+     */
+    private static boolean isStorable(PluginDescriptor descriptor) {
+        List<String> values = new ArrayList<>(descriptor.getRepositories());
+        values.addAll(descriptor.getLibraries());
+        values.add(descriptor.getName());
+        values.add(descriptor.getShadeHash());
+        for (String value : values) {
+            if (value != null && (value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0))
+                return false;
+        }
+        return true;
+    }
+
+    // a missing and an empty name or hash mean the same to CraftLib, so both are stored empty
+    private static String encode(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String decode(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedDescriptor {
+        private final long size;
+        private final long lastModified;
+        private final PluginDescriptor descriptor;
+    }
+}
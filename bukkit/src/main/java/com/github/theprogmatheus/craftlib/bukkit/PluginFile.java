@@ -2,40 +2,67 @@ package com.github.theprogmatheus.craftlib.bukkit;
 
 import com.github.theprogmatheus.craftlib.core.LibraryDependency;
 import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
+import lombok.ToString;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 @Data
 @RequiredArgsConstructor
 public class PluginFile {
 
     private final File file;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private PluginDescriptorCache descriptorCache;
+    private PluginDescriptor descriptor;
     private YamlConfiguration pluginYaml;
     private String pluginName;
     private Set<LibraryRepository> repositories;
     private Set<LibraryDependency> dependencies;
 
+    /**
+     * @param file            the plugin jar
+     * @param descriptorCache the cache to read the descriptor through, or null to read the jar
+     */
+    public PluginFile(File file, PluginDescriptorCache descriptorCache) {
+        this.file = file;
+        this.descriptorCache = descriptorCache;
+    }
+
+    /**
+     * Returns the plugin.yml fields CraftLib uses, from the descriptor cache when the jar did not change.
+     */
+    public PluginDescriptor getDescriptor() {
+        if (this.descriptor != null)
+            return this.descriptor;
+
+        try (LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.DESCRIPTOR_READ)) {
+            event.set("file", this.file.getPath());
+            if (this.descriptorCache != null) {
+                long misses = this.descriptorCache.getStatistics().getMisses();
+                this.descriptor = this.descriptorCache.get(this.file);
+                event.set("cached", this.descriptorCache.getStatistics().getMisses() == misses);
+            } else
+                this.descriptor = PluginDescriptor.read(this.file);
+            event.set("plugin", this.descriptor.getName());
+        }
+        return this.descriptor;
+    }
+
     public String getPluginName() {
         if (this.pluginName != null)
             return this.pluginName;
-
-        YamlConfiguration yaml = getPluginYaml();
-        if (yaml != null)
-            return this.pluginName = yaml.getString("name");
-        return this.pluginName;
+        return this.pluginName = getDescriptor().getName();
     }
 
     public boolean isValidPlugin() {
@@ -53,18 +80,9 @@ public class PluginFile {
         if (this.repositories != null)
             return this.repositories;
 
-        YamlConfiguration yaml = getPluginYaml();
-
-        if (yaml == null)
-            return new HashSet<>();
-
-        List<String> repositories = yaml.getStringList("craftlib.repositories");
-        if (repositories == null)
-            return new HashSet<>();
-
         Set<LibraryRepository> list = new HashSet<>();
 
-        repositories.forEach(repositoryUrl -> {
+        getDescriptor().getRepositories().forEach(repositoryUrl -> {
             try {
                 URI uri = URI.create(repositoryUrl);
                 String host = uri.getHost();
@@ -80,21 +98,9 @@ public class PluginFile {
         if (this.dependencies != null)
             return this.dependencies;
 
-        YamlConfiguration yaml = getPluginYaml();
-
-        if (yaml == null)
-            return this.dependencies = new HashSet<>();
-
-        List<String> libraries = yaml.getStringList("craftlib.libraries");
-        if (libraries == null)
-            libraries = yaml.getStringList("libraries");
-
-        if (libraries == null)
-            return this.dependencies = new HashSet<>();
-
         Set<LibraryDependency> list = new HashSet<>();
 
-        libraries.forEach(dependencyUrl -> {
+        getDescriptor().getLibraries().forEach(dependencyUrl -> {
             try {
                 list.add(LibraryDependency.fromCoordinates(dependencyUrl));
             } catch (Exception ignored) {
@@ -103,22 +109,13 @@ public class PluginFile {
         return this.dependencies = list;
     }
 
+    /**
+     * Parses the whole plugin.yml. CraftLib itself only needs the {@link #getDescriptor() descriptor}.
+     */
     public YamlConfiguration getPluginYaml() {
         if (this.pluginYaml != null)
             return this.pluginYaml;
-
-        try (JarFile jar = new JarFile(this.file)) {
-            JarEntry entry = jar.getJarEntry("plugin.yml");
-            if (entry == null)
-                return null;
-
-            try (InputStream input = jar.getInputStream(entry)) {
-                this.pluginYaml = YamlConfiguration.loadConfiguration(new InputStreamReader(input));
-            } catch (Exception ignored) {
-            }
-        } catch (Exception ignored) {
-        }
-        return this.pluginYaml;
+        return this.pluginYaml = PluginDescriptor.readPluginYaml(this.file);
     }
 
 
@@ -0,0 +1,163 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.core.LibraryLockfile;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the plugins folder while the server runs and resolves the libraries of every plugin jar
+ * dropped or updated there, so the next start finds them in the local repository and the lockfile.
+ * <p>
+ * A jar is only read once it stopped changing for {@value #QUIET_MILLIS} ms, since it is usually still
+ * being copied when the first event arrives. The work runs on a single low-priority daemon thread and
+ * nothing is loaded into the running server. With lazy libraries, only the dependency graphs are warmed
+ * and the jars are still fetched on first use.
+ */
+public class PluginFolderWatcher implements Runnable, Closeable {
+
+    private static final long QUIET_MILLIS = 2000;
+
+    private final JavaPlugin plugin;
+    private final Logger logger;
+    private final File folder;
+    private final MavenResolverContext context;
+    private final LibraryLockfile lockfile;
+    private final PluginDescriptorCache descriptorCache;
+    private final Map<File, JarState> pending = new LinkedHashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    public PluginFolderWatcher(JavaPlugin plugin, File folder, MavenResolverContext context, LibraryLockfile lockfile,
+                               PluginDescriptorCache descriptorCache) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.folder = folder;
+        this.context = context;
+        this.lockfile = lockfile;
+        this.descriptorCache = descriptorCache;
+    }
+
+    /**
+     * Starts watching the folder on a background thread.
+     *
+     * @throws IOException if the folder cannot be watched
+     */
+    public void start() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.folder.toPath().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.thread = new Thread(this, "CraftLib-Watcher");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+        this.thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = this.watchService.poll(QUIET_MILLIS / 2, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            continue;
+
+                        File file = this.folder.toPath().resolve((Path) event.context()).toFile();
+                        if (PluginFile.isValidJarFile(file))
+                            this.pending.put(file, new JarState(file.length(), file.lastModified(), System.currentTimeMillis()));
+                    }
+                    if (!key.reset())
+                        return;
+                }
+                resolveSettledJars();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // closed with the plugin
+        }
+    }
+
+    private void resolveSettledJars() {
+        long now = System.currentTimeMillis();
+        boolean resolved = false;
+        for (Iterator<Map.Entry<File, JarState>> iterator = this.pending.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<File, JarState> entry = iterator.next();
+            File file = entry.getKey();
+            JarState state = entry.getValue();
+            if (!file.isFile()) {
+                iterator.remove();
+                continue;
+            }
+
+            // still being written: wait until it stays the same for the quiet period
+            if (file.length() != state.size || file.lastModified() != state.lastModified) {
+                entry.setValue(new JarState(file.length(), file.lastModified(), now));
+                continue;
+            }
+            if (now - state.since < QUIET_MILLIS)
+                continue;
+
+            iterator.remove();
+            resolved |= resolve(file);
+        }
+
+        if (resolved)
+            save();
+    }
+
+    private boolean resolve(File file) {
+        PluginFile pluginFile = new PluginFile(file, this.descriptorCache);
+        if (!pluginFile.isValidPlugin() || pluginFile.getDependencies().isEmpty())
+            return false;
+
+        String pluginName = pluginFile.getPluginName();
+        try {
+            PluginLibraryResolver resolver = new PluginLibraryResolver(this.plugin, pluginFile, this.context);
+            resolver.setLockfile(this.lockfile);
+            resolver.resolve();
+            logger.info(String.format("[%s] Libraries of the new plugin jar %s are ready for the next start.", pluginName, file.getName()));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, String.format("[%s] Could not resolve the libraries of the new plugin jar %s ahead of the next start.",
+                    pluginName, file.getName()), e);
+        }
+        return true;
+    }
+
+    private void save() {
+        try {
+            if (this.lockfile != null)
+                this.lockfile.save();
+            this.descriptorCache.save();
+            this.context.getRepositoryStatistics().save(new File(this.plugin.getDataFolder(), PluginLibraryTracker.REPOSITORY_STATISTICS_NAME));
+            this.context.getNegativeLookupCache().save(new File(this.plugin.getDataFolder(), PluginLibraryTracker.NEGATIVE_CACHE_NAME));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not save the libraries resolved in the background.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.thread != null)
+            this.thread.interrupt();
+        if (this.watchService != null)
+            this.watchService.close();
+    }
+
+    @RequiredArgsConstructor
+    private static class JarState {
+        private final long size;
+        private final long lastModified;
+        private final long since;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.theprogmatheus.craftlib.bukkit;
+
+import com.github.theprogmatheus.craftlib.core.LibraryDependency;
+import com.github.theprogmatheus.craftlib.core.LibraryLockfile;
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.maven.UnifiedDependencyResolver;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the libraries of every plugin through one shared dependency graph,
+ * instead of one {@link PluginLibraryResolver} per plugin.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PluginGraphResolver {
+
+    private final Plugin plugin;
+    private final MavenResolverContext context;
+    private final List<PluginFile> pluginFiles;
+    private final LibraryLockfile lockfile;
+
+    public Map<PluginFile, Collection<File>> resolve() {
+        Logger logger = this.plugin.getLogger();
+
+        Map<PluginFile, Collection<File>> libraries = new LinkedHashMap<>();
+        Map<String, PluginFile> plugins = new LinkedHashMap<>();
+        Map<String, String> fingerprints = new HashMap<>();
+        Map<String, List<String>> coordinatesByPlugin = new LinkedHashMap<>();
+        Set<LibraryRepository> repositories = new LinkedHashSet<>();
+        for (PluginFile pluginFile : this.pluginFiles) {
+            String pluginName = pluginFile.getPluginName();
+            // the graph and the lockfile are keyed by plugin name, and the server only loads one of the jars anyway
+            PluginFile duplicate = plugins.putIfAbsent(pluginName, pluginFile);
+            if (duplicate != null) {
+                logger.log(Level.WARNING, String.format("[%s] Ambiguous plugin name for %s and %s, skipping the libraries of %s.",
+                        pluginName, duplicate.getFile().getName(), pluginFile.getFile().getName(), pluginFile.getFile().getName()));
+                continue;
+            }
+
+            if (this.lockfile != null) {
+                String fingerprint = LibraryLockfile.fingerprint(pluginFile.getDependencies(), pluginFile.getRepositories());
+                List<File> lockedFiles = this.lockfile.lookup(pluginName, fingerprint);
+                if (lockedFiles != null) {
+                    logger.info(String.format("[%s] Dependencies unchanged since the last resolution, using %s locked artifacts.", pluginName, lockedFiles.size()));
+                    libraries.put(pluginFile, lockedFiles);
+                    continue;
+                }
+                fingerprints.put(pluginName, fingerprint);
+            }
+
+            coordinatesByPlugin.put(pluginName, pluginFile.getDependencies().stream()
+                    .map(LibraryDependency::toCoordinates)
+                    .sorted()
+                    .collect(Collectors.toList()));
+            repositories.addAll(pluginFile.getRepositories());
+        }
+
+        if (coordinatesByPlugin.isEmpty())
+            return libraries;
+
+        logger.info(String.format("Resolving the libraries of %s plugins through a single dependency graph...", coordinatesByPlugin.size()));
+
+        UnifiedDependencyResolver.Result result = new UnifiedDependencyResolver(this.context)
+                .resolve(coordinatesByPlugin, LibraryRepository.toMavenRepositories(repositories));
+
+        result.getFailures().forEach((pluginName, failure) ->
+                logger.log(Level.SEVERE, String.format("[%s] Could not resolve plugin libraries, skipping it.", pluginName), failure));
+
+        result.getFiles().forEach((pluginName, files) -> {
+            logger.info(String.format("[%s] Resolved %s artifacts from the shared graph.", pluginName, files.size()));
+            if (this.lockfile != null)
+                this.lockfile.record(pluginName, fingerprints.get(pluginName), files);
+        });
+
+        logger.info(String.format("Finished resolving %s distinct artifacts for %s plugins.", result.getArtifactCount(), result.getFiles().size()));
+
+        // keep the scan order, whether a plugin came from the lockfile or from the graph
+        Map<PluginFile, Collection<File>> ordered = new LinkedHashMap<>();
+        plugins.forEach((pluginName, pluginFile) -> {
+            Collection<File> files = libraries.containsKey(pluginFile) ? libraries.get(pluginFile) : result.getFiles().get(pluginName);
+            if (files != null)
+                ordered.put(pluginFile, files);
+        });
+        return ordered;
+    }
+}
@@ -2,6 +2,7 @@ package com.github.theprogmatheus.craftlib.bukkit;
 
 import com.github.theprogmatheus.craftlib.core.LibraryDependency;
 import com.github.theprogmatheus.craftlib.core.LibraryResolver;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
 import lombok.Getter;
 import org.bukkit.plugin.Plugin;
 
@@ -22,6 +23,12 @@ public class PluginLibraryResolver extends LibraryResolver {
         this.pluginFile = pluginFile;
     }
 
+    public PluginLibraryResolver(Plugin plugin, PluginFile pluginFile, MavenResolverContext context) {
+        super(pluginFile.getPluginName(), plugin.getLogger(), context, pluginFile.getRepositories());
+        this.plugin = plugin;
+        this.pluginFile = pluginFile;
+    }
+
 
     @Override
     public Collection<File> resolve() {
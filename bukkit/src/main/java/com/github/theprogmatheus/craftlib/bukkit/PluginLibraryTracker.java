@@ -1,20 +1,61 @@
 package com.github.theprogmatheus.craftlib.bukkit;
 
+import com.github.theprogmatheus.craftlib.bukkit.loaders.LibraryLoaderImpl;
 import com.github.theprogmatheus.craftlib.core.LibraryLoader;
+import com.github.theprogmatheus.craftlib.core.LibraryLockfile;
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverSettings;
+import com.github.theprogmatheus.craftlib.core.maven.TransferStatistics;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
+import com.github.theprogmatheus.craftlib.core.utils.BlobStore;
+import com.github.theprogmatheus.craftlib.core.utils.DaemonThreadFactory;
+import com.github.theprogmatheus.craftlib.core.utils.FileHashCache;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
-
-import static com.github.theprogmatheus.craftlib.bukkit.PluginFile.isValidJarFile;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 public class PluginLibraryTracker implements Runnable {
 
     public static final File PLUGINS_FOLDER = new File("plugins");
+    public static final String LOCKFILE_NAME = "libraries.lock";
+    public static final String REPOSITORY_STATISTICS_NAME = "repositories.stats";
+    public static final String NEGATIVE_CACHE_NAME = "repositories.misses";
+    public static final String DESCRIPTOR_CACHE_NAME = "plugins.descriptors";
+    public static final String BLOB_HASH_CACHE_NAME = "blobs.hashes";
 
     private final JavaPlugin plugin;
     private final LibraryLoader<PluginFile> loader;
+    private final CraftLibConfig config;
+    @Getter
+    private MavenResolverContext context;
+    @Getter
+    private LibraryLockfile lockfile;
+    @Getter
+    private PluginDescriptorCache descriptorCache;
+    @Getter
+    private BlobStore blobStore;
+    @Getter
+    private Map<PluginFile, Collection<File>> libraries = new LinkedHashMap<>();
 
     @Override
     public void run() {
@@ -25,27 +66,212 @@ public class PluginLibraryTracker implements Runnable {
         if (files == null)
             return;
 
+        // sorted so the loader always receives the plugins in the same order, whatever finishes first
+        List<File> jarFiles = Arrays.stream(files)
+                .filter(PluginFile::isValidJarFile)
+                .sorted(Comparator.comparing(File::getName))
+                .collect(Collectors.toList());
 
-        for (File file : files) {
-            if (!isValidJarFile(file))
-                continue;
-
-            PluginFile pluginFile = new PluginFile(file);
-            if (!pluginFile.isValidPlugin())
-                continue;
+        if (jarFiles.isEmpty())
+            return;
 
-            if (pluginFile.getDependencies().isEmpty())
-                continue;
+        this.context = MavenResolverContext.of(this.config.getLibrariesFolder(this.plugin.getDataFolder()), this.config.getResolverSettings());
+        if (this.config.isLockfile())
+            this.lockfile = LibraryLockfile.load(new File(this.plugin.getDataFolder(), LOCKFILE_NAME));
+        this.context.getRepositoryStatistics().load(new File(this.plugin.getDataFolder(), REPOSITORY_STATISTICS_NAME));
+        this.context.getNegativeLookupCache().load(new File(this.plugin.getDataFolder(), NEGATIVE_CACHE_NAME));
+        if (this.lockfile != null)
+            this.context.getMetrics().registerCache("lockfile", this.lockfile.getStatistics());
+        this.descriptorCache = PluginDescriptorCache.load(new File(this.plugin.getDataFolder(), DESCRIPTOR_CACHE_NAME));
+        this.context.getMetrics().registerCache("plugin-descriptor", this.descriptorCache.getStatistics());
+        if (this.config.getBlobStore() != null) {
+            this.blobStore = new BlobStore(this.config.getBlobStore(), FileHashCache.load(new File(this.plugin.getDataFolder(), BLOB_HASH_CACHE_NAME)));
+            this.context.getMetrics().registerCache("blob-store", this.blobStore.getStatistics());
+            if (this.loader instanceof LibraryLoaderImpl)
+                ((LibraryLoaderImpl) this.loader).setBlobStore(this.blobStore);
+        }
 
-            PluginLibraryResolver pluginLibResolver = new PluginLibraryResolver(this.plugin, pluginFile);
-            this.loader.addLibraries(pluginFile, pluginLibResolver.resolve());
+        int threads = this.config.getEffectiveResolverThreads(jarFiles.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("CraftLib-Resolver"));
+        try {
+            this.libraries = this.config.isUnifiedGraph()
+                    ? resolveUnified(executor, jarFiles)
+                    : resolvePerPlugin(executor, jarFiles);
+            this.libraries.forEach(this.loader::addLibraries);
+            this.libraries.forEach((pluginFile, libraryFiles) -> this.context.getMetrics().setArtifactCount(pluginFile.getPluginName(), libraryFiles.size()));
+            linkIntoBlobStore();
+            saveLockfile(this.libraries.keySet());
+            saveDescriptorCache(jarFiles);
+            saveRepositoryStatistics();
+            warnUnmatchedRepositoryPolicies();
+        } finally {
+            executor.shutdownNow();
         }
 
+        TransferStatistics transferStatistics = this.context.getTransferStatistics();
+        if (transferStatistics.getDownloads() > 0)
+            this.plugin.getLogger().info(String.format("Library downloads: %s", transferStatistics));
+
         try {
             this.loader.loadLibraries();
         } catch (Exception e) {
             throw new RuntimeException("Could not load library files", e);
+        } finally {
+            saveBlobStore();
+        }
+    }
+
+    private Map<PluginFile, Collection<File>> resolvePerPlugin(ExecutorService executor, List<File> jarFiles) {
+        List<Future<Collection<File>>> futures = new ArrayList<>(jarFiles.size());
+        List<PluginFile> pluginFiles = new ArrayList<>(jarFiles.size());
+        for (File file : jarFiles) {
+            PluginFile pluginFile = new PluginFile(file, this.descriptorCache);
+            pluginFiles.add(pluginFile);
+            futures.add(executor.submit(() -> resolve(pluginFile)));
+        }
+
+        Map<PluginFile, Collection<File>> libraries = new LinkedHashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            Collection<File> libraryFiles = await(jarFiles.get(i), futures.get(i));
+            if (libraryFiles != null)
+                libraries.put(pluginFiles.get(i), libraryFiles);
+        }
+        return libraries;
+    }
+
+    private Map<PluginFile, Collection<File>> resolveUnified(ExecutorService executor, List<File> jarFiles) {
+        List<Future<PluginFile>> futures = new ArrayList<>(jarFiles.size());
+        for (File file : jarFiles)
+            futures.add(executor.submit(() -> scan(new PluginFile(file, this.descriptorCache))));
+
+        List<PluginFile> pluginFiles = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            PluginFile pluginFile = await(jarFiles.get(i), futures.get(i));
+            if (pluginFile != null)
+                pluginFiles.add(pluginFile);
+        }
+
+        if (pluginFiles.isEmpty())
+            return new LinkedHashMap<>();
+
+        return new PluginGraphResolver(this.plugin, this.context, pluginFiles, this.lockfile).resolve();
+    }
+
+    private PluginFile scan(PluginFile pluginFile) {
+        long start = System.nanoTime();
+        try {
+            if (!pluginFile.isValidPlugin())
+                return null;
+
+            if (pluginFile.getDependencies().isEmpty())
+                return null;
+
+            return pluginFile;
+        } finally {
+            String owner = pluginFile.isValidPlugin() ? pluginFile.getPluginName() : LibraryMetrics.GLOBAL;
+            this.context.getMetrics().record(owner, LibraryMetrics.Phase.SCAN, System.nanoTime() - start);
         }
     }
 
+    private Collection<File> resolve(PluginFile pluginFile) {
+        if (scan(pluginFile) == null)
+            return null;
+
+        PluginLibraryResolver pluginLibResolver = new PluginLibraryResolver(this.plugin, pluginFile, this.context);
+        pluginLibResolver.setLockfile(this.lockfile);
+        return pluginLibResolver.resolve();
+    }
+
+    private void linkIntoBlobStore() {
+        if (this.blobStore == null)
+            return;
+
+        Set<File> libraryFiles = new LinkedHashSet<>();
+        this.libraries.values().forEach(libraryFiles::addAll);
+        List<File> linkedFiles = new ArrayList<>();
+        for (File libraryFile : libraryFiles) {
+            try {
+                if (this.blobStore.link(libraryFile))
+                    linkedFiles.add(libraryFile);
+            } catch (IOException e) {
+                this.plugin.getLogger().log(Level.WARNING, String.format("Could not link %s into the blob store.", libraryFile), e);
+            }
+        }
+
+        // linked files carry the blob's modification time, which must not invalidate their lock
+        if (this.lockfile != null)
+            this.lockfile.refresh(linkedFiles);
+        if (!linkedFiles.isEmpty())
+            this.plugin.getLogger().info(String.format("Linked %s libraries into the blob store, freeing %s KiB.",
+                    linkedFiles.size(), this.blobStore.getSavedBytes() / 1024));
+    }
+
+    /**
+     * Repository policies may name a repository only a plugin declares, so they are checked once every plugin
+     * was scanned.
+     */
+    private void warnUnmatchedRepositoryPolicies() {
+        MavenResolverSettings settings = this.config.getResolverSettings();
+        List<LibraryRepository> repositories = new ArrayList<>(LibraryRepository.ALL);
+        this.libraries.keySet().forEach(pluginFile -> repositories.addAll(pluginFile.getRepositories()));
+
+        for (String key : settings.getRepositoryPolicies().keySet()) {
+            boolean mirror = settings.getMirrorUrl() != null && (key.equals(MavenResolverContext.MIRROR_ID) || LibraryRepository.isSameUrl(key, settings.getMirrorUrl()));
+            if (!mirror && repositories.stream().noneMatch(repository -> repository.getName().equals(key) || LibraryRepository.isSameUrl(key, repository.getUri().toString())))
+                this.plugin.getLogger().warning(String.format("The repository policy of '%s' matches no repository.", key));
+        }
+    }
+
+    private void saveBlobStore() {
+        if (this.blobStore == null)
+            return;
+
+        try {
+            this.blobStore.save();
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not save the blob store hash cache.", e);
+        }
+    }
+
+    private void saveLockfile(Collection<PluginFile> resolvedPlugins) {
+        if (this.lockfile == null)
+            return;
+
+        this.lockfile.retain(resolvedPlugins.stream().map(PluginFile::getPluginName).collect(Collectors.toList()));
+        try {
+            this.lockfile.save();
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not save the resolution lockfile.", e);
+        }
+    }
+
+    private void saveDescriptorCache(List<File> jarFiles) {
+        this.descriptorCache.retain(jarFiles);
+        try {
+            this.descriptorCache.save();
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not save the plugin descriptor cache.", e);
+        }
+    }
+
+    private void saveRepositoryStatistics() {
+        try {
+            this.context.getRepositoryStatistics().save(new File(this.plugin.getDataFolder(), REPOSITORY_STATISTICS_NAME));
+            this.context.getNegativeLookupCache().save(new File(this.plugin.getDataFolder(), NEGATIVE_CACHE_NAME));
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Could not save the repository statistics and misses.", e);
+        }
+    }
+
+    private <T> T await(File file, Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while resolving plugin libraries", e);
+        } catch (ExecutionException e) {
+            this.plugin.getLogger().log(Level.SEVERE, String.format("[%s] Could not resolve plugin libraries, skipping it.", file.getName()), e.getCause());
+            return null;
+        }
+    }
 }
@@ -2,7 +2,14 @@ package com.github.theprogmatheus.craftlib.bukkit.loaders;
 
 import com.github.theprogmatheus.craftlib.bukkit.PluginFile;
 import com.github.theprogmatheus.craftlib.core.LibraryLoader;
+import com.github.theprogmatheus.craftlib.core.LibraryResolver;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
+import com.github.theprogmatheus.craftlib.core.utils.BlobStore;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
@@ -14,6 +21,31 @@ public abstract class LibraryLoaderImpl implements LibraryLoader<PluginFile> {
 
     protected final Plugin plugin;
     protected final HashMap<PluginFile, Collection<File>> libraries;
+    /**
+     * The local repository the libraries were resolved into, when it is not the one in the data folder.
+     */
+    @Setter
+    private File librariesFolder;
+    /**
+     * The store the libraries and any generated jars are linked into, or null if there is none.
+     */
+    @Setter
+    @Getter(AccessLevel.PROTECTED)
+    private BlobStore blobStore;
+
+    /**
+     * @return the local repository the libraries were resolved into
+     */
+    protected File getLibrariesFolder() {
+        return this.librariesFolder != null ? this.librariesFolder : LibraryResolver.getLibrariesFolder(this.plugin.getDataFolder());
+    }
+
+    /**
+     * @return the metrics of the resolver context the libraries were resolved with
+     */
+    protected LibraryMetrics getMetrics() {
+        return MavenResolverContext.of(getLibrariesFolder()).getMetrics();
+    }
 
     @Override
     public void addLibraries(PluginFile target, Collection<File> libraryFiles) {
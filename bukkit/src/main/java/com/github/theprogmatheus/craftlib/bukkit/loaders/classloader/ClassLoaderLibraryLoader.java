@@ -2,6 +2,8 @@ package com.github.theprogmatheus.craftlib.bukkit.loaders.classloader;
 
 import com.github.theprogmatheus.craftlib.bukkit.PluginFile;
 import com.github.theprogmatheus.craftlib.bukkit.loaders.LibraryLoaderImpl;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
 import lombok.Getter;
 import org.bukkit.plugin.Plugin;
 
@@ -11,7 +13,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -33,7 +35,7 @@ public class ClassLoaderLibraryLoader extends LibraryLoaderImpl {
     private final Logger logger;
 
     public ClassLoaderLibraryLoader(Plugin plugin) {
-        super(plugin, new HashMap<>());
+        super(plugin, new LinkedHashMap<>());
         this.logger = plugin.getLogger();
     }
 
@@ -74,9 +76,15 @@ public class ClassLoaderLibraryLoader extends LibraryLoaderImpl {
             return;
         }
 
-        for (URL url : urls) {
-            logger.fine(String.format("[%s] Injecting library into classloader: %s", pluginName, new File(url.toURI()).getName()));
-            addURLMethod.invoke(classLoader, url);
+        try (LibraryMetrics.Timing ignored = getMetrics().time(pluginName, LibraryMetrics.Phase.INJECT)) {
+            for (URL url : urls) {
+                String libraryName = new File(url.toURI()).getName();
+                logger.fine(String.format("[%s] Injecting library into classloader: %s", pluginName, libraryName));
+                try (LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.INJECT)) {
+                    event.set("plugin", pluginName).set("library", libraryName).set("libraries", 1).set("loader", "classloader");
+                    addURLMethod.invoke(classLoader, url);
+                }
+            }
         }
         logger.info(String.format("[%s] %s dependencies were injected into plugin ClassLoader.", pluginName, urls.length));
     }
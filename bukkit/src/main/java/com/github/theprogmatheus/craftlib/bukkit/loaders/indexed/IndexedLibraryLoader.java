@@ -0,0 +1,247 @@
+package com.github.theprogmatheus.craftlib.bukkit.loaders.indexed;
+
+import com.github.theprogmatheus.craftlib.bukkit.PluginFile;
+import com.github.theprogmatheus.craftlib.bukkit.loaders.LibraryLoaderImpl;
+import com.github.theprogmatheus.craftlib.core.classloader.IndexedLibraryClassLoader;
+import com.github.theprogmatheus.craftlib.core.classloader.LibraryIndex;
+import com.github.theprogmatheus.craftlib.core.classloader.LibraryMaterializer;
+import com.github.theprogmatheus.craftlib.core.classloader.SharedLibraryLayer;
+import com.github.theprogmatheus.craftlib.core.maven.LazyArtifactResolver;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
+import lombok.Getter;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads libraries through an {@link IndexedLibraryClassLoader} per plugin, installed as the library
+ * loader the server's plugin classloader already delegates to for {@code libraries} declared in plugin.yml.
+ * <p>
+ * Only a field of the server's own plugin classloader is replaced, so unlike the addURL injection this
+ * works on Java 16+ without {@code --add-opens}. Libraries the plugin declared in its plugin.yml stay
+ * reachable, since the previous library loader becomes the parent of the indexed one.
+ * <p>
+ * With the shared layer enabled, the libraries several plugins use in the same version are loaded once by a
+ * shared loader that becomes the parent of the loader of every plugin using one of them, which keeps only its
+ * isolated libraries. Plugins declaring plugin.yml libraries already have a parent, so they keep all their
+ * libraries isolated, and plugins using no shared library never see the shared layer.
+ * <p>
+ * The loaders installed by an earlier load of CraftLib, e.g. after a reload, are closed once replaced. A closed
+ * loader reopens its jars on demand, so the classes it already defined keep resolving their own dependencies.
+ * <p>
+ * With lazy artifacts, the libraries not fetched yet are fetched by the resolver context on first use, except
+ * the ones the index does not know yet, which are fetched in one batch before the loaders are created.
+ */
+@Getter
+public class IndexedLibraryLoader extends LibraryLoaderImpl {
+
+    public static final String INDEX_NAME = "libraries.index";
+
+    private static Field libraryLoaderField;
+
+    static {
+        try {
+            // the plugin classloader that loaded CraftLib is the server's plugin classloader implementation
+            Field field = IndexedLibraryLoader.class.getClassLoader().getClass().getDeclaredField("libraryLoader");
+            if (ClassLoader.class.isAssignableFrom(field.getType())) {
+                field.setAccessible(true);
+                libraryLoaderField = field;
+            }
+        } catch (Exception ignored) {
+            libraryLoaderField = null;
+        }
+    }
+
+    private final Logger logger;
+    private final boolean shared;
+    private SharedLibraryLayer<PluginFile> sharedLayer;
+    private IndexedLibraryClassLoader sharedLoader;
+    private LibraryMaterializer materializer;
+
+    public IndexedLibraryLoader(Plugin plugin) {
+        this(plugin, false);
+    }
+
+    public IndexedLibraryLoader(Plugin plugin, boolean shared) {
+        super(plugin, new LinkedHashMap<>());
+        this.logger = plugin.getLogger();
+        this.shared = shared;
+    }
+
+    @Override
+    public boolean loadLibraries() throws Exception {
+        // kept per server, as the libraries folder may be shared with other servers indexing other libraries
+        LibraryIndex index = LibraryIndex.load(new File(this.plugin.getDataFolder(), INDEX_NAME));
+        getMetrics().registerCache("library-index", index.getStatistics());
+
+        // the context the libraries were resolved with, which remembers the jars left to fetch
+        LazyArtifactResolver lazyArtifacts = MavenResolverContext.of(getLibrariesFolder()).getLazyArtifacts();
+        if (lazyArtifacts.getPendingCount() > 0) {
+            this.materializer = lazyArtifacts;
+        }
+
+        Set<File> indexedFiles = new HashSet<>();
+        this.libraries.values().forEach(indexedFiles::addAll);
+
+        if (this.materializer != null) {
+            // the jars never indexed cannot be routed to, so they are fetched now, in one batch
+            List<File> unindexed = new ArrayList<>();
+            for (File file : indexedFiles) {
+                if (!file.isFile() && index.getKnownDirectories(file) == null)
+                    unindexed.add(file);
+            }
+            if (!unindexed.isEmpty()) {
+                logger.info(String.format("Fetching %s dependencies that were never indexed.", unindexed.size()));
+                try {
+                    lazyArtifacts.materializeAll(unindexed);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not fetch every dependency that was never indexed.", e);
+                }
+            }
+            logger.info(String.format("%s dependencies are not fetched yet and will be fetched on first use.", lazyArtifacts.getPendingCount()));
+        }
+
+        Map<PluginFile, Collection<File>> isolated = new LinkedHashMap<>(this.libraries);
+        if (this.shared)
+            installSharedLayer(isolated, index);
+
+        for (Map.Entry<PluginFile, Collection<File>> entry : isolated.entrySet())
+            installLibraries(entry.getKey(), entry.getValue(), index);
+
+        index.retain(indexedFiles);
+        try {
+            index.save();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not save the library index.", e);
+        }
+        return true;
+    }
+
+    public void installLibraries(PluginFile pluginFile, Collection<File> files, LibraryIndex index) throws Exception {
+        String pluginName = pluginFile.getPluginName();
+        ClassLoader classLoader = getPluginClassLoader(pluginFile);
+        if (classLoader == null)
+            return;
+
+        ClassLoader parent = getPreviousLibraryLoader(classLoader);
+        if (parent == null)
+            parent = this.sharedLoader != null && this.sharedLayer.isSharing(pluginFile)
+                    ? this.sharedLoader
+                    : classLoader.getParent();
+
+        ClassLoader replaced = (ClassLoader) libraryLoaderField.get(classLoader);
+        IndexedLibraryClassLoader libraryLoader;
+        try (LibraryMetrics.Timing ignored = getMetrics().time(pluginName, LibraryMetrics.Phase.INJECT);
+             LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.INJECT)) {
+            event.set("plugin", pluginName).set("libraries", files.size()).set("loader", "indexed");
+            libraryLoader = new IndexedLibraryClassLoader(parent, files, index, this.materializer);
+            libraryLoaderField.set(classLoader, libraryLoader);
+        }
+        closeReplacedLoaders(pluginName, replaced);
+
+        logger.info(String.format("[%s] %s dependencies were indexed into the plugin library loader (%s packages).",
+                pluginName, files.size(), libraryLoader.getDirectoryCount()));
+    }
+
+    /**
+     * Logs how many classes the shared layer defined once instead of once per plugin.
+     * Meaningful once the plugins are enabled and have loaded their classes.
+     */
+    public void reportSharedLayer() {
+        if (this.sharedLoader == null)
+            return;
+
+        long savedBytes = 0;
+        for (File file : this.sharedLayer.getSharedFiles())
+            savedBytes += this.sharedLoader.getDefinedClassBytes(file) * (this.sharedLayer.getUsers(file) - 1);
+
+        logger.info(String.format("The shared library layer defined %s classes from %s libraries once, saving about %s KiB of metaspace.",
+                this.sharedLoader.getDefinedClassCount(), this.sharedLayer.getSharedFiles().size(), savedBytes / 1024));
+    }
+
+    private void installSharedLayer(Map<PluginFile, Collection<File>> isolated, LibraryIndex index) throws Exception {
+        Map<PluginFile, Collection<File>> candidates = new LinkedHashMap<>();
+        for (Map.Entry<PluginFile, Collection<File>> entry : this.libraries.entrySet()) {
+            ClassLoader classLoader = getPluginClassLoader(entry.getKey());
+            if (classLoader != null && getPreviousLibraryLoader(classLoader) == null)
+                candidates.put(entry.getKey(), entry.getValue());
+        }
+
+        SharedLibraryLayer<PluginFile> layer = SharedLibraryLayer.plan(candidates);
+        if (layer.getSharedFiles().isEmpty())
+            return;
+
+        this.sharedLayer = layer;
+        try (LibraryMetrics.Timing ignored = getMetrics().time(LibraryMetrics.GLOBAL, LibraryMetrics.Phase.INJECT)) {
+            this.sharedLoader = new IndexedLibraryClassLoader(IndexedLibraryLoader.class.getClassLoader().getParent(),
+                    layer.getSharedFiles(), index, this.materializer);
+        }
+        isolated.putAll(layer.getIsolatedFiles());
+
+        logger.info(String.format("%s dependencies used by several plugins were indexed into the shared library loader.",
+                layer.getSharedFiles().size()));
+    }
+
+    private ClassLoader getPluginClassLoader(PluginFile pluginFile) {
+        String pluginName = pluginFile.getPluginName();
+        Plugin plugin = pluginFile.getPlugin();
+
+        if (plugin == null) {
+            logger.warning(String.format("[%s] Plugin reference is null.", pluginName));
+            return null;
+        }
+
+        ClassLoader classLoader = plugin.getClass().getClassLoader();
+        if (!libraryLoaderField.getDeclaringClass().isInstance(classLoader)) {
+            logger.warning(String.format("[%s] ClassLoader is not a plugin classloader.", pluginName));
+            return null;
+        }
+        return classLoader;
+    }
+
+    /**
+     * Closes the loaders an earlier load of CraftLib installed for a plugin, its shared loader included,
+     * up to the library loader the server created.
+     */
+    private void closeReplacedLoaders(String pluginName, ClassLoader replaced) {
+        for (ClassLoader loader = replaced; loader instanceof IndexedLibraryClassLoader; loader = loader.getParent()) {
+            try {
+                ((IndexedLibraryClassLoader) loader).close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, String.format("[%s] Could not close the previous plugin library loader.", pluginName), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the library loader the server created for the plugin.yml libraries, skipping the one
+     * installed by an earlier load of CraftLib, e.g. after a reload.
+     */
+    private static ClassLoader getPreviousLibraryLoader(ClassLoader classLoader) throws IOException {
+        ClassLoader previous;
+        try {
+            previous = (ClassLoader) libraryLoaderField.get(classLoader);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+
+        while (previous instanceof IndexedLibraryClassLoader) {
+            ClassLoader parent = previous.getParent();
+            if (parent == classLoader.getParent())
+                return null;
+            previous = parent;
+        }
+        return previous;
+    }
+
+    public static boolean isAvailable() {
+        return libraryLoaderField != null;
+    }
+}
@@ -1,21 +1,36 @@
 package com.github.theprogmatheus.craftlib.bukkit.loaders.shade;
 
 import com.github.theprogmatheus.craftlib.bukkit.PluginFile;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.utils.FileHashCache;
 import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import com.github.theprogmatheus.craftlib.core.utils.RawZipFile;
 import lombok.Getter;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 @Getter
@@ -23,19 +38,43 @@ class PluginLibraryShader {
 
     private static final String MAIN_CLASS_NAME = "com.github.theprogmatheus.craftlib.bukkit.shade.Main";
     private static final String PLUGIN_YML = "plugin.yml";
+    private static final String DEFAULT_SHADE_NAME = "CraftLibs";
+    private static final int MAX_PENDING_ENTRIES = 256;
 
 
     private final Plugin plugin;
     private final File shadeJar;
+    private final String shadeName;
     private final Collection<File> files;
+    private final Set<String> excludedEntries;
     private final String shadeHash;
+    private final ExecutorService compressionExecutor;
 
 
     public PluginLibraryShader(Plugin plugin, File shadeJar, Collection<File> files) throws Exception {
+        this(plugin, shadeJar, DEFAULT_SHADE_NAME, files, null, null);
+    }
+
+    /**
+     * @param compressionExecutor the pool deflating the entries that cannot be copied raw, or null to deflate them serially
+     */
+    public PluginLibraryShader(Plugin plugin, File shadeJar, String shadeName, Collection<File> files, FileHashCache hashCache,
+                               ExecutorService compressionExecutor) throws Exception {
+        this(plugin, shadeJar, shadeName, files, Collections.emptySet(), hashCache, compressionExecutor);
+    }
+
+    /**
+     * @param excludedEntries the entries left out of the shade jar, e.g. because an earlier library already provides them
+     */
+    public PluginLibraryShader(Plugin plugin, File shadeJar, String shadeName, Collection<File> files, Set<String> excludedEntries,
+                               FileHashCache hashCache, ExecutorService compressionExecutor) throws Exception {
         this.plugin = plugin;
         this.shadeJar = shadeJar;
+        this.shadeName = shadeName;
         this.files = files;
-        this.shadeHash = FileUtils.hashFiles(files);
+        this.excludedEntries = excludedEntries;
+        this.shadeHash = hashExcludedEntries(FileUtils.hashFiles(files, hashCache), excludedEntries);
+        this.compressionExecutor = compressionExecutor;
     }
 
 
@@ -43,41 +82,141 @@ class PluginLibraryShader {
         if (alreadyExists(true))
             return this.shadeJar;
 
-        Set<String> addedEntries = new HashSet<>();
-
-        try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(shadeJar), createManifest())) {
+        Set<String> addedEntries = new HashSet<>(this.excludedEntries);
 
-            byte[] buffer = new byte[8192];
+        // written aside and moved into place, so an existing shade jar is always complete
+        File parent = this.shadeJar.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File temp = new File(parent, this.shadeJar.getName() + ".tmp");
+        try (RawZipWriter writer = new RawZipWriter(temp)) {
+            writer.writeEntry(JarFile.MANIFEST_NAME, createManifest());
 
             for (File file : files) {
-                try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
-                    ZipEntry entry;
-                    while ((entry = zis.getNextEntry()) != null) {
-                        String entryName = entry.getName();
+                try (LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.SHADE)) {
+                    event.set("plugin", this.shadeName).set("library", file.getName());
+                    event.set("entries", addLibrary(writer, file, addedEntries));
+                }
+            }
 
-                        if (entry.isDirectory() || entryName.startsWith("META-INF"))
-                            continue;
+            addDummyMain(writer);
+            addPluginYml(writer);
+        } catch (Exception e) {
+            temp.delete();
+            throw e;
+        }
+        Files.move(temp.toPath(), this.shadeJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return shadeJar;
+    }
 
-                        if (addedEntries.contains(entryName))
-                            continue;
+    /**
+     * Copies the entries of a library still compressed, falling back to inflating
+     * them when the library cannot be read raw (e.g. ZIP64 archives, or local headers
+     * not matching the central directory).
+     *
+     * @return the number of entries added
+     */
+    private int addLibrary(RawZipWriter writer, File file, Set<String> addedEntries) throws IOException {
+        RawZipFile rawZipFile;
+        try {
+            rawZipFile = RawZipFile.open(file);
+        } catch (ZipException e) {
+            return addLibraryInflated(writer, file, addedEntries);
+        }
 
-                        jarOutputStream.putNextEntry(new JarEntry(entry.getName()));
-                        addedEntries.add(entryName);
+        int added = 0;
+        try (RawZipFile zipFile = rawZipFile) {
+            for (RawZipFile.Entry entry : zipFile.getEntries()) {
+                if (isShaded(entry.getName(), entry.isDirectory(), addedEntries)) {
+                    writer.copyEntry(zipFile, entry);
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
 
-                        int bytesRead;
-                        while ((bytesRead = zis.read(buffer)) != -1) {
-                            jarOutputStream.write(buffer, 0, bytesRead);
-                        }
+    private int addLibraryInflated(RawZipWriter writer, File file, Set<String> addedEntries) throws IOException {
+        // entries are deflated on the pool but written in their original order, so the jar stays deterministic
+        Deque<Future<RawZipWriter.CompressedEntry>> pending = new ArrayDeque<>();
+        int added = 0;
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!isShaded(entry.getName(), entry.isDirectory(), addedEntries))
+                    continue;
 
-                        jarOutputStream.closeEntry();
-                    }
+                added++;
+                if (this.compressionExecutor == null) {
+                    writer.writeEntry(entry.getName(), readFully(zis));
+                    continue;
                 }
+
+                String name = entry.getName();
+                byte[] data = readFully(zis);
+                pending.add(this.compressionExecutor.submit(() -> RawZipWriter.compress(name, data)));
+                while (pending.size() > MAX_PENDING_ENTRIES)
+                    writer.writeCompressed(await(pending.poll()));
             }
+            while (!pending.isEmpty())
+                writer.writeCompressed(await(pending.poll()));
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        return added;
+    }
 
-            addDummyMain(jarOutputStream);
-            addPluginYml(jarOutputStream);
+    private static RawZipWriter.CompressedEntry await(Future<RawZipWriter.CompressedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing shaded entries");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress a shaded entry", e.getCause());
         }
-        return shadeJar;
+    }
+
+    private static boolean isShaded(String entryName, boolean directory, Set<String> addedEntries) {
+        return isShadedEntry(entryName, directory) && addedEntries.add(entryName);
+    }
+
+    private static boolean isShadedEntry(String entryName, boolean directory) {
+        return !directory && !entryName.startsWith("META-INF");
+    }
+
+    /**
+     * @return the names of the entries of a library that end up in a shade jar, in the library's order
+     */
+    static Set<String> listShadedEntries(File file) throws IOException {
+        Set<String> entries = new LinkedHashSet<>();
+        for (String entry : RawZipFile.listEntryNames(file)) {
+            if (isShadedEntry(entry, entry.endsWith("/")))
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Folds the excluded entries into a content hash, so a shade jar built without them is told apart.
+     *
+     * @return the hash itself when nothing is excluded
+     */
+    static String hashExcludedEntries(String hash, Collection<String> excludedEntries) {
+        if (excludedEntries.isEmpty())
+            return hash;
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(hash.getBytes(StandardCharsets.US_ASCII));
+        for (String entry : new TreeSet<>(excludedEntries)) {
+            digest.update((byte) '\n');
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        return FileUtils.toHexString(digest.digest());
     }
 
     public boolean alreadyExists(boolean checkHash) {
@@ -87,37 +226,34 @@ class PluginLibraryShader {
         if (PluginFile.isValidJarFile(this.shadeJar)) {
             PluginFile pluginFile = new PluginFile(this.shadeJar);
             if (pluginFile.isValidPlugin()) {
-                String shadeHash = pluginFile.getPluginYaml().getString("shade-hash");
+                String shadeHash = pluginFile.getDescriptor().getShadeHash();
                 return (shadeHash != null && !shadeHash.trim().isEmpty()) && (this.shadeHash.equals(shadeHash));
             }
         }
         return false;
     }
 
-    private Manifest createManifest() {
+    private byte[] createManifest() throws IOException {
         Manifest manifest = new Manifest();
         Attributes attributes = manifest.getMainAttributes();
         attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
         attributes.put(Attributes.Name.MAIN_CLASS, MAIN_CLASS_NAME);
-        return manifest;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        return out.toByteArray();
     }
 
-    private void addDummyMain(JarOutputStream jos) throws Exception {
+    private void addDummyMain(RawZipWriter writer) throws Exception {
         String path = MAIN_CLASS_NAME.replace('.', '/') + ".class";
         try (InputStream is = getClass().getClassLoader().getResourceAsStream(path)) {
             if (is == null)
                 throw new IOException("Main dummy class not found in resources: " + path);
-            jos.putNextEntry(new JarEntry(path));
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = is.read(buffer)) != -1) {
-                jos.write(buffer, 0, bytesRead);
-            }
-            jos.closeEntry();
+            writer.writeEntry(path, readFully(is));
         }
     }
 
-    private void addPluginYml(JarOutputStream jarOutputStream) throws Exception {
+    private void addPluginYml(RawZipWriter writer) throws Exception {
         InputStream inputStream = this.plugin.getResource(PLUGIN_YML);
         if (inputStream == null) throw new FileNotFoundException("plugin.yml não encontrado!");
 
@@ -125,12 +261,22 @@ class PluginLibraryShader {
         pluginYaml.load(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
 
         pluginYaml.set("main", MAIN_CLASS_NAME);
-        pluginYaml.set("name", "CraftLibs");
+        pluginYaml.set("name", this.shadeName);
         pluginYaml.set("description", "A shade plugin with all the necessary dependencies");
         pluginYaml.set("shade-hash", this.shadeHash);
+        pluginYaml.set("commands", null);
+        pluginYaml.set("permissions", null);
+
+        writer.writeEntry(PLUGIN_YML, pluginYaml.saveToString().getBytes());
+    }
 
-        jarOutputStream.putNextEntry(new JarEntry(PLUGIN_YML));
-        jarOutputStream.write(pluginYaml.saveToString().getBytes());
-        jarOutputStream.closeEntry();
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+        return out.toByteArray();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,235 @@
+package com.github.theprogmatheus.craftlib.bukkit.loaders.shade;
+
+import com.github.theprogmatheus.craftlib.core.utils.RawZipFile;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file whose entries are either copied still compressed from another zip file,
+ * or deflated from memory.
+ * <p>
+ * Copied entries keep their original compressed data, CRC and sizes, so no inflate/deflate cycle happens.
+ * A ZIP64 end of central directory is written when the archive has too many entries for the classic one.
+ */
+class RawZipWriter implements Closeable {
+
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final short VERSION_DEFLATE = 20;
+    private static final short VERSION_ZIP64 = 45;
+    private static final short FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final short FLAG_UTF8 = 0x0800;
+    /**
+     * Deflated entries are dated 1980-01-01, so the same content always makes the same zip file.
+     */
+    private static final int ENTRY_DOS_TIME = (1 << 21) | (1 << 16);
+
+    private final FileChannel channel;
+    private final List<CentralEntry> entries = new ArrayList<>();
+
+    RawZipWriter(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Copies an entry of the source file without decompressing it.
+     */
+    void copyEntry(RawZipFile source, RawZipFile.Entry entry) throws IOException {
+        // sizes and CRC are known upfront, so the copy never needs a data descriptor
+        CentralEntry central = new CentralEntry(entry.getRawName(), entry.getVersionMadeBy(), entry.getVersionNeeded(),
+                (short) (entry.getFlags() & ~FLAG_DATA_DESCRIPTOR), entry.getMethod(), entry.getTime(), entry.getDate(),
+                entry.getCrc(), entry.getCompressedSize(), entry.getSize(), entry.getExternalAttributes(), this.channel.position());
+
+        writeLocalHeader(central);
+        source.transferData(entry, this.channel);
+        this.entries.add(central);
+    }
+
+    /**
+     * Deflates and writes an entry from memory.
+     */
+    void writeEntry(String name, byte[] data) throws IOException {
+        writeCompressed(compress(name, data));
+    }
+
+    /**
+     * Writes an entry deflated beforehand, possibly on another thread, with {@link #compress(String, byte[])}.
+     */
+    void writeCompressed(CompressedEntry entry) throws IOException {
+        CentralEntry central = new CentralEntry(entry.name, VERSION_DEFLATE, VERSION_DEFLATE,
+                FLAG_UTF8, (short) ZipEntry.DEFLATED, (short) entry.dosTime, (short) (entry.dosTime >>> 16),
+                entry.crc, entry.data.length, entry.size, 0, this.channel.position());
+
+        writeLocalHeader(central);
+        write(ByteBuffer.wrap(entry.data));
+        this.entries.add(central);
+    }
+
+    /**
+     * Deflates an entry in memory. Safe to call from any thread.
+     */
+    static CompressedEntry compress(String name, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try {
+            byte[] buffer = new byte[8192];
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return new CompressedEntry(name.getBytes(StandardCharsets.UTF_8), (int) crc.getValue(), data.length,
+                compressed.toByteArray(), ENTRY_DOS_TIME);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long directoryOffset = this.channel.position();
+            for (CentralEntry entry : this.entries)
+                writeCentralHeader(entry);
+            long directorySize = this.channel.position() - directoryOffset;
+
+            boolean zip64 = this.entries.size() >= 0xFFFF || directoryOffset >= 0xFFFFFFFFL || directorySize >= 0xFFFFFFFFL;
+            if (zip64)
+                writeZip64EndOfCentralDirectory(directoryOffset, directorySize);
+
+            ByteBuffer end = allocate(22);
+            end.putInt(RawZipFile.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) Math.min(this.entries.size(), 0xFFFF));
+            end.putShort((short) Math.min(this.entries.size(), 0xFFFF));
+            end.putInt((int) Math.min(directorySize, 0xFFFFFFFFL));
+            end.putInt((int) Math.min(directoryOffset, 0xFFFFFFFFL));
+            end.putShort((short) 0);
+            write(end);
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void writeLocalHeader(CentralEntry entry) throws IOException {
+        if (entry.localHeaderOffset >= 0xFFFFFFFFL)
+            throw new ZipException("Archive exceeds 4 GiB");
+
+        ByteBuffer header = allocate(30 + entry.name.length);
+        header.putInt(RawZipFile.LOCAL_HEADER_SIGNATURE);
+        header.putShort(entry.versionNeeded);
+        header.putShort(entry.flags);
+        header.putShort(entry.method);
+        header.putShort(entry.time);
+        header.putShort(entry.date);
+        header.putInt(entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.put(entry.name);
+        write(header);
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        ByteBuffer header = allocate(46 + entry.name.length);
+        header.putInt(RawZipFile.CENTRAL_HEADER_SIGNATURE);
+        header.putShort(entry.versionMadeBy);
+        header.putShort(entry.versionNeeded);
+        header.putShort(entry.flags);
+        header.putShort(entry.method);
+        header.putShort(entry.time);
+        header.putShort(entry.date);
+        header.putInt(entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(entry.externalAttributes);
+        header.putInt((int) entry.localHeaderOffset);
+        header.put(entry.name);
+        write(header);
+    }
+
+    private void writeZip64EndOfCentralDirectory(long directoryOffset, long directorySize) throws IOException {
+        long recordOffset = this.channel.position();
+
+        ByteBuffer record = allocate(56 + 20);
+        record.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        record.putLong(44);
+        record.putShort(VERSION_ZIP64);
+        record.putShort(VERSION_ZIP64);
+        record.putInt(0);
+        record.putInt(0);
+        record.putLong(this.entries.size());
+        record.putLong(this.entries.size());
+        record.putLong(directorySize);
+        record.putLong(directoryOffset);
+
+        record.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+        record.putInt(0);
+        record.putLong(recordOffset);
+        record.putInt(1);
+        write(record);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (buffer.position() > 0)
+            buffer.flip();
+        while (buffer.hasRemaining())
+            this.channel.write(buffer);
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @RequiredArgsConstructor
+    private static class CentralEntry {
+        private final byte[] name;
+        private final short versionMadeBy;
+        private final short versionNeeded;
+        private final short flags;
+        private final short method;
+        private final short time;
+        private final short date;
+        private final int crc;
+        private final long compressedSize;
+        private final long size;
+        private final int externalAttributes;
+        private final long localHeaderOffset;
+    }
+
+    @RequiredArgsConstructor
+    static class CompressedEntry {
+        private final byte[] name;
+        private final int crc;
+        private final long size;
+        private final byte[] data;
+        private final int dosTime;
+    }
+}
@@ -1,35 +1,225 @@
 package com.github.theprogmatheus.craftlib.bukkit.loaders.shade;
 
 import com.github.theprogmatheus.craftlib.bukkit.loaders.LibraryLoaderImpl;
+import com.github.theprogmatheus.craftlib.core.utils.BlobStore;
+import com.github.theprogmatheus.craftlib.core.utils.DaemonThreadFactory;
+import com.github.theprogmatheus.craftlib.core.utils.FileHashCache;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import lombok.RequiredArgsConstructor;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 
+/**
+ * Loads libraries by shading them into helper plugins.
+ * <p>
+ * Every library gets its own shard, a helper plugin named after the hash of the library's content.
+ * As with a single shaded jar, the first library providing a class wins: a shard leaves out the entries
+ * of earlier libraries, and those entries are part of its name.
+ * A shard is only built when no shard with that content's {@code shade-hash} exists yet, so adding or updating
+ * one library never rewrites the others, while a truncated or foreign jar under a shard's name is rebuilt.
+ * Missing shards are built concurrently, and shards that are no longer used are deleted.
+ * While no library and no shard changed, the shards of the previous boot are reused without opening any of them.
+ */
 public class ShadeLibraryLoader extends LibraryLoaderImpl {
 
+    public static final String HASH_CACHE_NAME = "libraries.hashes";
+    public static final String SHARD_INDEX_NAME = "libraries.shards";
+    public static final String SHARDS_FOLDER_NAME = "shaded";
+    public static final String SHARD_NAME_PREFIX = "CraftLibs-";
+
+    private static final String LEGACY_SHADE_JAR_NAME = "libraries.jar";
+    private static final int SHARD_ID_LENGTH = 16;
+
+    private final int threads;
+
     public ShadeLibraryLoader(Plugin plugin) {
-        super(plugin, new HashMap<>());
+        this(plugin, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShadeLibraryLoader(Plugin plugin, int threads) {
+        super(plugin, new LinkedHashMap<>());
+        this.threads = Math.max(1, threads);
     }
 
     @Override
     public boolean loadLibraries() throws Exception {
-        Set<File> libraryFiles = new HashSet<>();
+        // ordered, so the first library providing a class always wins
+        Set<File> libraryFiles = new LinkedHashSet<>();
         this.libraries.values().forEach(libraryFiles::addAll);
 
         if (libraryFiles.isEmpty())
             return false;
 
-        plugin.getLogger().info("Trying to load a shaded dependency file");
+        plugin.getLogger().info("Trying to load the shaded dependency files");
+
+        File shardsFolder = new File(plugin.getDataFolder(), SHARDS_FOLDER_NAME);
+        FileHashCache hashCache = FileHashCache.load(new File(plugin.getDataFolder(), HASH_CACHE_NAME));
+        LibraryMetrics metrics = getMetrics();
+        metrics.registerCache("file-hash", hashCache.getStatistics());
+
+        ShardIndex shardIndex = ShardIndex.load(new File(plugin.getDataFolder(), SHARD_INDEX_NAME));
+        metrics.registerCache("shard-index", shardIndex.getStatistics());
+
+        Map<String, File> shards = new LinkedHashMap<>();
+        List<Shard> missingShards = new ArrayList<>();
+        List<String> shardIds;
+        try (LibraryMetrics.Timing ignored = metrics.time(LibraryMetrics.GLOBAL, LibraryMetrics.Phase.HASH)) {
+            shardIds = shardIndex.getShardIds(libraryFiles, shardsFolder);
+            if (shardIds == null)
+                shardIds = planShards(libraryFiles, shardsFolder, hashCache, shards, missingShards);
+            else
+                shardIds.stream().filter(Objects::nonNull).forEach(shardId -> shards.putIfAbsent(shardId, new File(shardsFolder, shardId + ".jar")));
+        }
+
+        try (LibraryMetrics.Timing ignored = metrics.time(LibraryMetrics.GLOBAL, LibraryMetrics.Phase.SHADE)) {
+            buildShards(missingShards, hashCache);
+        }
+
+        try {
+            hashCache.save();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save the library hash cache.", e);
+        }
+        deleteUnusedShards(shardsFolder, shards.values());
+        linkShards(shards.values());
+
+        shardIndex.update(libraryFiles, shardIds, shardsFolder);
+        try {
+            shardIndex.save();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save the shard index.", e);
+        }
+
+        plugin.getLogger().info(String.format("Using %s shaded dependency files, %s of them rebuilt.", shards.size(), missingShards.size()));
+
+        boolean enabled = true;
+        try (LibraryMetrics.Timing ignored = metrics.time(LibraryMetrics.GLOBAL, LibraryMetrics.Phase.INJECT)) {
+            for (File shardJar : shards.values()) {
+                try (LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.INJECT)) {
+                    event.set("library", shardJar.getName()).set("libraries", 1).set("loader", "shade");
+                    Plugin shadedPlugin = Bukkit.getPluginManager().loadPlugin(shardJar);
+                    event.set("plugin", shadedPlugin.getName());
+                    enabled &= shadedPlugin.isEnabled();
+                }
+            }
+        }
+
+        plugin.getLogger().info(String.format("Shaded dependency files loaded successfully [%s].", shards.size()));
+        return enabled;
+    }
+
+    /**
+     * Lists the entries of every library to find its shard, and collects the shards that do not exist yet.
+     *
+     * @return the shard id of every library, null for a library whose entries are all provided by earlier ones
+     */
+    private List<String> planShards(Set<File> libraryFiles, File shardsFolder, FileHashCache hashCache, Map<String, File> shards,
+                                    List<Shard> missingShards) throws Exception {
+        List<String> shardIds = new ArrayList<>(libraryFiles.size());
+        Set<String> providedEntries = new HashSet<>();
+        for (File libraryFile : libraryFiles) {
+            Set<String> entries = PluginLibraryShader.listShadedEntries(libraryFile);
+            Set<String> excludedEntries = new HashSet<>();
+            for (String entry : entries) {
+                if (!providedEntries.add(entry))
+                    excludedEntries.add(entry);
+            }
+            // every class is already provided, e.g. by another copy of the same library
+            if (!entries.isEmpty() && excludedEntries.size() == entries.size()) {
+                shardIds.add(null);
+                continue;
+            }
 
-        PluginLibraryShader libraryShader = new PluginLibraryShader(this.plugin, new File(plugin.getDataFolder(), "libraries.jar"), libraryFiles);
-        File shadedJar = libraryShader.shade();
-        Plugin shadedPlugin = Bukkit.getPluginManager().loadPlugin(shadedJar);
+            String libraryHash = FileUtils.hashFile(libraryFile, hashCache);
+            String shardId = PluginLibraryShader.hashExcludedEntries(libraryHash, excludedEntries).substring(0, SHARD_ID_LENGTH);
+            Shard shard = new Shard(new File(shardsFolder, shardId + ".jar"), libraryFile, excludedEntries);
+            if (shards.putIfAbsent(shardId, shard.jar) == null && !newShader(shard, hashCache, null).alreadyExists(true))
+                missingShards.add(shard);
+            shardIds.add(shardId);
+        }
+        return shardIds;
+    }
+
+    /**
+     * Builds the missing shards concurrently. A single missing shard gets the whole pool to deflate
+     * the entries that cannot be copied raw instead.
+     */
+    private void buildShards(List<Shard> missingShards, FileHashCache hashCache) throws Exception {
+        if (missingShards.isEmpty())
+            return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads, new DaemonThreadFactory("CraftLib-Shader"));
+        try {
+            // a single shard is built on this thread, so the pool is free to deflate its entries
+            if (missingShards.size() == 1) {
+                newShader(missingShards.get(0), hashCache, executor).shade();
+                return;
+            }
+
+            List<Future<File>> futures = new ArrayList<>(missingShards.size());
+            missingShards.forEach(shard -> futures.add(executor.submit(() -> newShader(shard, hashCache, null).shade())));
+
+            for (Future<File> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Could not build a shaded dependency file", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PluginLibraryShader newShader(Shard shard, FileHashCache hashCache, ExecutorService compressionExecutor) throws Exception {
+        String shardName = SHARD_NAME_PREFIX + shard.jar.getName().substring(0, SHARD_ID_LENGTH);
+        return new PluginLibraryShader(this.plugin, shard.jar, shardName, Collections.singletonList(shard.library), shard.excludedEntries,
+                hashCache, compressionExecutor);
+    }
+
+    /**
+     * Shards built from the same library are identical on every server running the same CraftLib, so they share one blob.
+     */
+    private void linkShards(Collection<File> shardJars) {
+        BlobStore blobStore = getBlobStore();
+        if (blobStore == null)
+            return;
+
+        try {
+            blobStore.linkAll(shardJars);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not link the shaded dependency files into the blob store.", e);
+        }
+    }
+
+    private void deleteUnusedShards(File shardsFolder, Collection<File> usedShards) {
+        new File(plugin.getDataFolder(), LEGACY_SHADE_JAR_NAME).delete();
+
+        File[] files = shardsFolder.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            if (!usedShards.contains(file) && !file.delete())
+                plugin.getLogger().warning(String.format("Could not delete the unused shaded dependency file %s", file.getName()));
+        }
+    }
 
-        plugin.getLogger().info(String.format("Shaded dependency file loaded successfully [%s].", shadedPlugin.getName()));
-        return shadedPlugin.isEnabled();
+    @RequiredArgsConstructor
+    private static class Shard {
+        private final File jar;
+        private final File library;
+        private final Set<String> excludedEntries;
     }
 }
@@ -0,0 +1,155 @@
+package com.github.theprogmatheus.craftlib.bukkit.loaders.shade;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Remembers which shard every library was shaded into, so a warm boot neither lists the entries of every library
+ * nor parses the plugin.yml of every shard.
+ * <p>
+ * A shard leaves out the entries of all earlier libraries, so the index is only reused while the ordered libraries
+ * and their shards keep the same size and modification time.
+ */
+class ShardIndex {
+
+    private static final String HEADER = "# CraftLib shard index v1 - generated, do not edit";
+    private static final String NO_SHARD = "-";
+
+    private final File file;
+    private final List<Entry> entries = new ArrayList<>();
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private ShardIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the index from disk. A missing or unreadable index results in an empty one.
+     */
+    static ShardIndex load(File file) {
+        ShardIndex index = new ShardIndex(file);
+        if (!file.isFile())
+            return index;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\t");
+                if (parts.length != 6)
+                    continue;
+                try {
+                    index.entries.add(new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                            NO_SHARD.equals(parts[3]) ? null : parts[3], Long.parseLong(parts[4]), Long.parseLong(parts[5])));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the shard of every library, if neither the libraries nor their shards changed since they were indexed.
+     *
+     * @param libraryFiles the libraries, in the order they are shaded
+     * @param shardsFolder the folder holding the shards
+     * @return the shard id of every library, null for a library whose entries are all provided by earlier ones,
+     * or null if the shards have to be planned again
+     */
+    List<String> getShardIds(Collection<File> libraryFiles, File shardsFolder) {
+        if (!this.statistics.record(matches(libraryFiles, shardsFolder)))
+            return null;
+
+        List<String> shardIds = new ArrayList<>(this.entries.size());
+        this.entries.forEach(entry -> shardIds.add(entry.shardId));
+        return shardIds;
+    }
+
+    private boolean matches(Collection<File> libraryFiles, File shardsFolder) {
+        if (this.entries.size() != libraryFiles.size())
+            return false;
+
+        Iterator<Entry> iterator = this.entries.iterator();
+        for (File libraryFile : libraryFiles) {
+            Entry entry = iterator.next();
+            if (!entry.library.equals(libraryFile.getAbsolutePath()) || entry.librarySize != libraryFile.length()
+                    || entry.libraryLastModified != libraryFile.lastModified())
+                return false;
+
+            if (entry.shardId == null)
+                continue;
+
+            File shardJar = new File(shardsFolder, entry.shardId + ".jar");
+            if (entry.shardSize != shardJar.length() || entry.shardLastModified != shardJar.lastModified())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the index with the current shards. Must be called once the shards are in their final place.
+     *
+     * @param libraryFiles the libraries, in the order they are shaded
+     * @param shardIds     the shard id of every library, null for a library without a shard
+     * @param shardsFolder the folder holding the shards
+     */
+    void update(Collection<File> libraryFiles, List<String> shardIds, File shardsFolder) {
+        this.entries.clear();
+
+        Iterator<String> iterator = shardIds.iterator();
+        for (File libraryFile : libraryFiles) {
+            String shardId = iterator.next();
+            File shardJar = shardId == null ? null : new File(shardsFolder, shardId + ".jar");
+            this.entries.add(new Entry(libraryFile.getAbsolutePath(), libraryFile.length(), libraryFile.lastModified(), shardId,
+                    shardJar == null ? 0 : shardJar.length(), shardJar == null ? 0 : shardJar.lastModified()));
+        }
+    }
+
+    /**
+     * Writes the index to disk, replacing the previous one atomically.
+     *
+     * @throws IOException if the index could not be written
+     */
+    void save() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        File temp = new File(parent, this.file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Entry entry : this.entries) {
+                writer.write(entry.library + "\t" + entry.librarySize + "\t" + entry.libraryLastModified + "\t"
+                        + (entry.shardId == null ? NO_SHARD : entry.shardId) + "\t" + entry.shardSize + "\t" + entry.shardLastModified);
+                writer.write('\n');
+            }
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final String library;
+        private final long librarySize;
+        private final long libraryLastModified;
+        private final String shardId;
+        private final long shardSize;
+        private final long shardLastModified;
+    }
+}
@@ -13,6 +13,9 @@ dependencies {
     annotationProcessor("org.projectlombok:lombok:${lombokVersion}")
     testCompileOnly("org.projectlombok:lombok:${lombokVersion}")
     testAnnotationProcessor("org.projectlombok:lombok:${lombokVersion}")
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
     implementation("org.apache.maven.resolver:maven-resolver-impl:1.9.15")
     implementation("org.apache.maven.resolver:maven-resolver-api:1.9.15")
@@ -24,6 +27,10 @@ dependencies {
 }
 
 
+tasks.test {
+    useJUnitPlatform()
+}
+
 java {
     toolchain.languageVersion.set(JavaLanguageVersion.of(8))
     sourceCompatibility = JavaVersion.VERSION_1_8
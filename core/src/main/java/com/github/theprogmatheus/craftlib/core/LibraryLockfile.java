@@ -0,0 +1,235 @@
+package com.github.theprogmatheus.craftlib.core;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Persists the exact artifacts resolved for each owner (usually a plugin), so later starts can skip
+ * Maven resolution entirely while nothing changed.
+ * <p>
+ * Every entry is keyed by a fingerprint of the declared libraries and repositories. A locked entry is
+ * only reused when its fingerprint still matches and every locked file still exists with the same
+ * size and modification time, which only costs one stat call per artifact.
+ * Owners declaring SNAPSHOT libraries are never locked, since their artifacts can change remotely.
+ */
+public class LibraryLockfile {
+
+    private static final String HEADER = "# CraftLib resolution lockfile v1 - generated, do not edit";
+
+    @Getter
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private LibraryLockfile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the lockfile from disk. A missing or unreadable lockfile results in an empty one.
+     *
+     * @param file the lockfile location
+     * @return the loaded lockfile
+     */
+    public static LibraryLockfile load(File file) {
+        LibraryLockfile lockfile = new LibraryLockfile(file);
+        if (!file.isFile())
+            return lockfile;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\t");
+                if (parts.length < 2)
+                    continue;
+
+                List<LockedFile> files = new ArrayList<>(parts.length - 2);
+                for (int i = 2; i < parts.length && files != null; i++) {
+                    LockedFile lockedFile = LockedFile.parse(parts[i]);
+                    if (lockedFile != null)
+                        files.add(lockedFile);
+                    else
+                        files = null;
+                }
+                if (files != null)
+                    lockfile.entries.put(parts[0], new Entry(parts[1], files));
+            }
+        } catch (IOException ignored) {
+            lockfile.entries.clear();
+        }
+        return lockfile;
+    }
+
+    /**
+     * Computes the fingerprint of a set of declared libraries and repositories.
+     *
+     * @param dependencies the declared libraries
+     * @param repositories the declared repositories, in search order
+     * @return the fingerprint, or null if the declaration cannot be locked (it contains SNAPSHOT libraries)
+     */
+    public static String fingerprint(Collection<LibraryDependency> dependencies, Collection<LibraryRepository> repositories) {
+        if (dependencies.stream().anyMatch(LibraryDependency::isSnapshot))
+            return null;
+
+        StringBuilder builder = new StringBuilder();
+        dependencies.stream().map(LibraryDependency::toCoordinates).sorted().forEach(coords -> builder.append(coords).append('\n'));
+        builder.append('\n');
+        repositories.forEach(repository -> builder.append(repository.getUri()).append('\n'));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return FileUtils.toHexString(digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the locked artifacts of an owner, if they are still valid for the given fingerprint.
+     *
+     * @param owner       the owner name
+     * @param fingerprint the current fingerprint of its declaration
+     * @return the locked files, or null if there is no valid entry
+     */
+    public List<File> lookup(String owner, String fingerprint) {
+        if (fingerprint == null)
+            return null;
+
+        Entry entry = this.entries.get(owner);
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            this.statistics.miss();
+            return null;
+        }
+
+        List<File> files = new ArrayList<>(entry.files.size());
+        for (LockedFile lockedFile : entry.files) {
+            File file = new File(lockedFile.path);
+            if (file.length() != lockedFile.size || file.lastModified() != lockedFile.lastModified) {
+                this.statistics.miss();
+                return null;
+            }
+            files.add(file);
+        }
+        this.statistics.hit();
+        return files;
+    }
+
+    /**
+     * Records the artifacts resolved for an owner. Nothing is recorded for a null fingerprint.
+     *
+     * @param owner       the owner name
+     * @param fingerprint the fingerprint of its declaration
+     * @param files       the resolved files
+     */
+    public void record(String owner, String fingerprint, Collection<File> files) {
+        if (fingerprint == null)
+            return;
+
+        List<LockedFile> lockedFiles = files.stream()
+                .map(file -> new LockedFile(file.getAbsolutePath(), file.length(), file.lastModified()))
+                .collect(Collectors.toList());
+        this.entries.put(owner, new Entry(fingerprint, lockedFiles));
+    }
+
+    /**
+     * Records the current size and modification time of the given locked files, after they were replaced
+     * by files with the same content, e.g. links into a {@link com.github.theprogmatheus.craftlib.core.utils.BlobStore}.
+     *
+     * @param files the replaced files
+     */
+    public void refresh(Collection<File> files) {
+        Set<String> paths = new HashSet<>();
+        files.forEach(file -> paths.add(file.getAbsolutePath()));
+        this.entries.replaceAll((owner, entry) -> new Entry(entry.fingerprint, entry.files.stream()
+                .map(lockedFile -> {
+                    if (!paths.contains(lockedFile.path))
+                        return lockedFile;
+                    File file = new File(lockedFile.path);
+                    return new LockedFile(lockedFile.path, file.length(), file.lastModified());
+                })
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * Keeps only the entries of the given owners, dropping those of plugins that were removed.
+     *
+     * @param owners the owners to keep
+     */
+    public void retain(Collection<String> owners) {
+        this.entries.keySet().retainAll(owners);
+    }
+
+    /**
+     * Writes the lockfile to disk, replacing the previous one atomically.
+     *
+     * @throws IOException if the lockfile could not be written
+     */
+    public synchronized void save() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        File temp = new File(parent, this.file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(this.entries).entrySet()) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(entry.getValue().fingerprint);
+                for (LockedFile lockedFile : entry.getValue().files) {
+                    writer.write('\t');
+                    writer.write(lockedFile.toString());
+                }
+                writer.write('\n');
+            }
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final String fingerprint;
+        private final List<LockedFile> files;
+    }
+
+    @RequiredArgsConstructor
+    private static class LockedFile {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        private static LockedFile parse(String value) {
+            int sizeIndex = value.lastIndexOf('|', value.lastIndexOf('|') - 1);
+            if (sizeIndex < 0)
+                return null;
+            try {
+                String[] stat = value.substring(sizeIndex + 1).split("\\|");
+                return new LockedFile(value.substring(0, sizeIndex), Long.parseLong(stat[0]), Long.parseLong(stat[1]));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return path + "|" + size + "|" + lastModified;
+        }
+    }
+}
@@ -5,8 +5,12 @@ import lombok.RequiredArgsConstructor;
 import org.eclipse.aether.repository.RemoteRepository;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents a Maven repository where dependencies can be fetched from.
@@ -58,4 +62,62 @@ public class LibraryRepository {
         return new RemoteRepository.Builder(this.name, "default", this.uri.toString()).build();
     }
 
+    /**
+     * Converts the given repositories into Maven repositories, followed by the {@link #ALL default ones}.
+     * <p>
+     * Repositories pointing to the same URL are only kept once, in their first position, and
+     * repositories sharing a name get a numeric suffix so every Maven repository id stays unique.
+     *
+     * @param repositories the repositories to search first, in order
+     * @return the Maven repositories to search, in order
+     */
+    public static List<RemoteRepository> toMavenRepositories(Collection<LibraryRepository> repositories) {
+        Set<String> urls = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        List<RemoteRepository> mavenRepositories = new ArrayList<>();
+
+        List<LibraryRepository> candidates = new ArrayList<>(repositories);
+        candidates.addAll(ALL);
+        for (LibraryRepository repository : candidates) {
+            String url = repository.getUri().toString();
+            if (!urls.add(normalizeUrl(url)))
+                continue;
+
+            String id = repository.getName();
+            for (int i = 2; !ids.add(id); i++)
+                id = repository.getName() + "-" + i;
+
+            mavenRepositories.add(new RemoteRepository.Builder(id, "default", url).build());
+        }
+        return mavenRepositories;
+    }
+
+    /**
+     * Checks whether the given Maven repository is one of the {@link #ALL default repositories}, as built by
+     * {@link #toMavenRepositories(Collection)}. A repository a plugin declared is never a default one, even when
+     * it points to the URL of one: it then replaced the default entry and carries the plugin's name instead.
+     *
+     * @param repository the Maven repository
+     * @return if it is a default repository
+     */
+    public static boolean isDefaultRepository(RemoteRepository repository) {
+        return ALL.stream().anyMatch(defaultRepository -> defaultRepository.getName().equals(repository.getId())
+                && isSameUrl(defaultRepository.getUri().toString(), repository.getUrl()));
+    }
+
+    /**
+     * Checks whether two repository URLs point to the same repository, whatever their trailing slash.
+     *
+     * @param url   a repository URL
+     * @param other another repository URL
+     * @return if both point to the same repository
+     */
+    public static boolean isSameUrl(String url, String other) {
+        return url != null && other != null && normalizeUrl(url).equals(normalizeUrl(other));
+    }
+
+    private static String normalizeUrl(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
 }
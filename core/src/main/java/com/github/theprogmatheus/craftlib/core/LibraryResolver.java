@@ -2,17 +2,25 @@ package com.github.theprogmatheus.craftlib.core;
 
 
 import com.github.theprogmatheus.craftlib.core.maven.MavenDependencyResolver;
+import com.github.theprogmatheus.craftlib.core.maven.MavenResolverContext;
+import com.github.theprogmatheus.craftlib.core.maven.NegativeLookupCache;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
 import lombok.Data;
+import org.eclipse.aether.collection.DependencyCollectionException;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.DependencyResolutionException;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -33,6 +41,7 @@ public abstract class LibraryResolver {
     private final File librariesFolder;
     private final Set<LibraryRepository> repositories;
     private final MavenDependencyResolver mavenDependencyResolver;
+    private LibraryLockfile lockfile;
 
     public abstract Collection<File> resolve();
 
@@ -43,17 +52,24 @@ public abstract class LibraryResolver {
      * @param repositories A list of repositories to search in order.
      */
     public LibraryResolver(String name, Logger logger, File dataFolder, Set<LibraryRepository> repositories) {
+        this(name, logger, MavenResolverContext.of(getLibrariesFolder(dataFolder)), repositories);
+    }
+
+    /**
+     * Constructs a new LibraryResolver bound to an existing resolver context.
+     *
+     * @param context      The shared Maven resolver context, which also defines the libraries folder.
+     * @param repositories A list of repositories to search in order.
+     */
+    public LibraryResolver(String name, Logger logger, MavenResolverContext context, Set<LibraryRepository> repositories) {
         this.name = name;
         this.logger = logger;
-        this.librariesFolder = new File(dataFolder, "libraries");
+        this.librariesFolder = context.getLocalRepository();
         this.repositories = repositories;
 
-        List<RemoteRepository> mavenRepositories = this.repositories.stream()
-                .map(LibraryRepository::toMavenRepository)
-                .collect(Collectors.toList());
-        mavenRepositories.addAll(LibraryRepository.ALL.stream().map(LibraryRepository::toMavenRepository).collect(Collectors.toList()));
-
-        this.mavenDependencyResolver = new MavenDependencyResolver(this.librariesFolder, mavenRepositories);
+        List<RemoteRepository> mavenRepositories = LibraryRepository.toMavenRepositories(this.repositories);
+        this.mavenDependencyResolver = new MavenDependencyResolver(context, mavenRepositories);
+        this.mavenDependencyResolver.setOwner(name);
     }
 
 
@@ -70,21 +86,43 @@ public abstract class LibraryResolver {
             return new ArrayList<>();
         }
 
+        String fingerprint = this.lockfile != null ? LibraryLockfile.fingerprint(dependencies, this.repositories) : null;
+        List<File> lockedFiles = fingerprint != null ? this.lockfile.lookup(this.name, fingerprint) : null;
+        if (lockedFiles != null) {
+            logger.info(formatLog("Dependencies unchanged since the last resolution, using %s locked artifacts.", lockedFiles.size()));
+            return lockedFiles;
+        }
+
         logger.info(formatLog("Starting to resolve %s dependencies...", dependencies.size()));
 
-        Set<File> resolvedFiles = new HashSet<>();
-        dependencies.forEach(dependency -> {
+        // root libraries are resolved concurrently, then merged back in their declaration order
+        ExecutorService executor = this.mavenDependencyResolver.getContext().getDownloadExecutor();
+        Map<LibraryDependency, Future<List<File>>> futures = new LinkedHashMap<>();
+        dependencies.forEach(dependency -> futures.put(dependency, executor.submit(() -> {
+            logger.fine(formatLog("Resolving dependency: %s", dependency));
+            List<File> files = resolveMaven(dependency);
+            logger.fine(formatLog("Successfully reolsved dependency: %s", dependency));
+            return files;
+        })));
+
+        Set<File> resolvedFiles = new LinkedHashSet<>();
+        futures.forEach((dependency, future) -> {
             try {
-                logger.fine(formatLog("Resolving dependency: %s", dependency));
-                List<File> files = resolveMaven(dependency);
-                resolvedFiles.addAll(files);
-                logger.fine(formatLog("Successfully reolsved dependency: %s", dependency));
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, formatLog("Failed to resolve dependency: %s", dependency), e);
-                throw new RuntimeException("Dependency resolution failed for " + dependency, e);
+                resolvedFiles.addAll(future.get());
+            } catch (ExecutionException e) {
+                logger.log(Level.SEVERE, formatLog("Failed to resolve dependency: %s", dependency), e.getCause());
+                futures.values().forEach(pending -> pending.cancel(true));
+                throw new RuntimeException("Dependency resolution failed for " + dependency, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while resolving " + dependency, e);
             }
         });
 
+        // lazily collected jars may not be fetched yet, and only fetched files can be locked
+        if (fingerprint != null && resolvedFiles.stream().allMatch(File::isFile))
+            this.lockfile.record(this.name, fingerprint, resolvedFiles);
+
         logger.info(formatLog("Finished resolving all dependencies."));
         return resolvedFiles;
     }
@@ -125,13 +163,16 @@ public abstract class LibraryResolver {
     public List<File> resolveMaven(LibraryDependency dependency) throws IOException {
         String coords = dependency.toCoordinates();
         try {
-            List<File> resolvedFiles = mavenDependencyResolver.resolveDependencies(coords);
+            // lazily, only the graph is collected and missing jars are fetched on first use
+            List<File> resolvedFiles = mavenDependencyResolver.getContext().getSettings().isLazyArtifacts()
+                    ? mavenDependencyResolver.collectDependencies(coords)
+                    : mavenDependencyResolver.resolveDependencies(coords);
             if (resolvedFiles.isEmpty())
                 throw new IOException("No artifacts found for: " + coords);
 
             logger.info(formatLog("Resolved " + resolvedFiles.size() + " artifacts for: " + coords));
             return resolvedFiles;
-        } catch (DependencyResolutionException e) {
+        } catch (DependencyResolutionException | DependencyCollectionException e) {
             throw new IOException("Failed to resolve dependency: " + coords, e);
         }
     }
@@ -162,14 +203,27 @@ public abstract class LibraryResolver {
         logger.fine("Dependency not cached, preparing to download: " + dependency);
         outputFile.getParentFile().mkdirs();
 
+        // shares the misses recorded by the Aether path, keyed the same way
+        NegativeLookupCache negativeLookupCache = mavenDependencyResolver.getContext().getNegativeLookupCache();
+        String coords = dependency.getGroupId() + ":" + dependency.getArtifactId() + ":jar:" + dependency.getVersion();
+
         IOException lastError = null;
         for (LibraryRepository repository : repositories) {
+            String repositoryUrl = repository.getUri().toString();
+            if (negativeLookupCache.isKnownMiss(repositoryUrl, coords)) {
+                logger.fine(String.format("Skipping %s, known not to have %s", repositoryUrl, coords));
+                continue;
+            }
             try {
                 URL url = dependency.getDownloadURI(repository).toURL();
                 logger.fine(String.format("Trying to download from %s", url));
                 download(url, outputFile);
+                negativeLookupCache.recordHit(repositoryUrl, coords);
                 logger.info(String.format("Downloaded dependency successfully: %s", url));
                 return outputFile;
+            } catch (FileNotFoundException e) {
+                negativeLookupCache.recordMiss(repositoryUrl, coords);
+                lastError = e;
             } catch (IOException e) {
                 lastError = e;
             }
@@ -189,6 +243,11 @@ public abstract class LibraryResolver {
         connection.setRequestProperty("User-Agent", "CraftLib Resolver");
         connection.connect();
 
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+            logger.log(Level.FINE, "Not found " + url + ": HTTP 404");
+            throw new FileNotFoundException("Not found " + url + ": HTTP 404");
+        }
+
         if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
             logger.log(Level.FINE, "Failed to download " + url + ": HTTP " + connection.getResponseCode());
             throw new IOException("Failed to download " + url + ": HTTP " + connection.getResponseCode());
@@ -196,18 +255,34 @@ public abstract class LibraryResolver {
 
         logger.fine("Starting download to file: " + destination.getAbsolutePath());
 
+        // written aside and moved into place, so other processes sharing the folder never read a partial jar
+        File temp = File.createTempFile(destination.getName(), ".tmp", destination.getParentFile());
         try (InputStream in = connection.getInputStream();
-             FileOutputStream out = new FileOutputStream(destination)) {
+             FileOutputStream out = new FileOutputStream(temp)) {
             byte[] buffer = new byte[8192];
             int len;
 
             while ((len = in.read(buffer)) != -1) {
                 out.write(buffer, 0, len);
             }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
         }
+        FileUtils.moveAtomically(temp, destination);
         logger.fine("Download finished for file: " + destination.getAbsolutePath());
     }
 
+    /**
+     * Returns the local Maven repository folder used for the given data folder.
+     *
+     * @param dataFolder The plugin's base data folder.
+     * @return the libraries folder inside it
+     */
+    public static File getLibrariesFolder(File dataFolder) {
+        return new File(dataFolder, "libraries");
+    }
+
     private String formatLog(String message, Object... args) {
         return String.format("[%s] %s", this.name, String.format(message, args));
     }
@@ -0,0 +1,222 @@
+package com.github.theprogmatheus.craftlib.core.classloader;
+
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Manages a dynamic Class Data Sharing (AppCDS) archive of the library classes.
+ * <p>
+ * The archive itself is written by the JVM: a training boot started with {@code -XX:ArchiveClassesAtExit}
+ * records every class loaded from a jar, including the libraries defined by plugin classloaders, and dumps
+ * them at shutdown. Later boots map it with {@code -XX:SharedArchiveFile} and skip parsing and verifying
+ * those classes. Since JVM flags cannot be changed at runtime, this class detects how the JVM was started,
+ * prints the flags to use and remembers a fingerprint of the library set the archive was trained with,
+ * so an archive made stale by changed libraries is reported (or dropped, when the JVM recreates it itself).
+ */
+public class ClassDataSharing {
+
+    public static final String ARCHIVE_NAME = "libraries.jsa";
+    public static final int MINIMUM_JAVA_VERSION = 13;
+    public static final int AUTO_CREATE_JAVA_VERSION = 19;
+
+    private static final String TRAINING_FLAG = "-XX:ArchiveClassesAtExit=";
+    private static final String ARCHIVE_FLAG = "-XX:SharedArchiveFile=";
+    private static final String AUTO_CREATE_FLAG = "-XX:+AutoCreateSharedArchive";
+    private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+
+    @Getter
+    private final File archive;
+    private final File fingerprintFile;
+    private final Logger logger;
+
+    public ClassDataSharing(File folder, Logger logger) {
+        this.archive = new File(folder, ARCHIVE_NAME);
+        this.fingerprintFile = new File(folder, ARCHIVE_NAME + FINGERPRINT_SUFFIX);
+        this.logger = logger;
+    }
+
+    /**
+     * How the running JVM uses the archive.
+     */
+    public enum Mode {
+        /**
+         * The archive is not used.
+         */
+        NONE,
+        /**
+         * The JVM records the loaded classes and writes the archive at shutdown.
+         */
+        TRAINING,
+        /**
+         * The JVM maps the archive.
+         */
+        ACTIVE,
+        /**
+         * The JVM maps the archive, and writes it at shutdown when it was missing or unusable at startup.
+         */
+        AUTO_CREATE
+    }
+
+    /**
+     * Checks the archive against the libraries loaded on this boot and logs what to do with it.
+     *
+     * @param libraries the library files loaded on this boot
+     * @return how the running JVM uses the archive
+     */
+    public Mode check(Collection<File> libraries) {
+        int javaVersion = getJavaVersion();
+        if (javaVersion < MINIMUM_JAVA_VERSION) {
+            logger.warning(String.format("Class Data Sharing of libraries needs Java %s or newer, this server runs Java %s.",
+                    MINIMUM_JAVA_VERSION, javaVersion));
+            return Mode.NONE;
+        }
+
+        String fingerprint = fingerprint(libraries);
+        boolean stale = !this.archive.isFile() || !fingerprint.equals(readFingerprint());
+        Mode mode = detectMode(ManagementFactory.getRuntimeMXBean().getInputArguments());
+
+        switch (mode) {
+            case TRAINING:
+                writeFingerprint(fingerprint);
+                logger.info(String.format("Training boot: the JVM writes the Class Data Sharing archive %s at shutdown.", this.archive.getPath()));
+                logger.info(String.format("Afterwards, start the server with: %s", getArchiveFlags()));
+                break;
+            case AUTO_CREATE:
+                if (!this.archive.isFile()) {
+                    // the JVM started without the archive, so it writes one for this library set at shutdown
+                    writeFingerprint(fingerprint);
+                } else if (stale) {
+                    if (this.archive.delete())
+                        logger.info("The libraries changed since the Class Data Sharing archive was created, it is recreated on the next restart.");
+                    else
+                        logger.warning(String.format("Could not delete the stale Class Data Sharing archive %s.", this.archive.getPath()));
+                }
+                break;
+            case ACTIVE:
+                if (stale) {
+                    logger.warning("The libraries changed since the Class Data Sharing archive was created, so their classes are loaded from scratch.");
+                    logger.warning(String.format("Run one boot with %s to train it again.", getTrainingFlags()));
+                } else
+                    logger.info(String.format("Library classes are loaded from the Class Data Sharing archive %s.", this.archive.getPath()));
+                break;
+            default:
+                if (stale)
+                    logger.info(String.format("To create a Class Data Sharing archive of the libraries, run one boot with: %s", getTrainingFlags()));
+                else
+                    logger.info(String.format("A Class Data Sharing archive of the libraries is ready, start the server with: %s", getArchiveFlags()));
+                if (javaVersion >= AUTO_CREATE_JAVA_VERSION)
+                    logger.info(String.format("Or let the JVM keep it up to date with: %s", getAutoCreateFlags()));
+                break;
+        }
+        return mode;
+    }
+
+    /**
+     * Detects how a JVM started with the given arguments uses the archive.
+     *
+     * @param arguments the JVM input arguments
+     * @return the mode of the archive
+     */
+    public Mode detectMode(List<String> arguments) {
+        boolean training = false;
+        boolean archive = false;
+        boolean autoCreate = false;
+        for (String argument : arguments) {
+            if (argument.startsWith(TRAINING_FLAG))
+                training |= isArchive(argument.substring(TRAINING_FLAG.length()));
+            else if (argument.startsWith(ARCHIVE_FLAG))
+                archive |= isArchive(argument.substring(ARCHIVE_FLAG.length()));
+            else if (argument.equals(AUTO_CREATE_FLAG))
+                autoCreate = true;
+        }
+
+        if (training)
+            return Mode.TRAINING;
+        if (archive)
+            return autoCreate ? Mode.AUTO_CREATE : Mode.ACTIVE;
+        return Mode.NONE;
+    }
+
+    public String getTrainingFlags() {
+        return TRAINING_FLAG + this.archive.getPath();
+    }
+
+    public String getArchiveFlags() {
+        return ARCHIVE_FLAG + this.archive.getPath();
+    }
+
+    public String getAutoCreateFlags() {
+        return AUTO_CREATE_FLAG + " " + ARCHIVE_FLAG + this.archive.getPath();
+    }
+
+    /**
+     * Identifies a library set on a given JVM build, since an archive is only valid for both.
+     *
+     * @param libraries the library files
+     * @return the fingerprint, a hex SHA-256
+     */
+    public static String fingerprint(Collection<File> libraries) {
+        Set<String> entries = new TreeSet<>();
+        for (File library : libraries)
+            entries.add(library.getAbsolutePath() + "\t" + library.length() + "\t" + library.lastModified());
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((System.getProperty("java.vm.version") + "\n").getBytes(StandardCharsets.UTF_8));
+            for (String entry : entries)
+                digest.update((entry + "\n").getBytes(StandardCharsets.UTF_8));
+            return FileUtils.toHexString(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the feature version of the running Java, e.g. 8 or 17
+     */
+    public static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        if (version.startsWith("1."))
+            version = version.substring(2);
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+
+    private boolean isArchive(String path) {
+        return new File(path).getAbsoluteFile().equals(this.archive.getAbsoluteFile());
+    }
+
+    private String readFingerprint() {
+        try {
+            return this.fingerprintFile.isFile()
+                    ? new String(Files.readAllBytes(this.fingerprintFile.toPath()), StandardCharsets.UTF_8).trim()
+                    : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeFingerprint(String fingerprint) {
+        try {
+            File parent = this.fingerprintFile.getAbsoluteFile().getParentFile();
+            if (parent != null)
+                parent.mkdirs();
+            Files.write(this.fingerprintFile.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not save the Class Data Sharing fingerprint.", e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.github.theprogmatheus.craftlib.core.classloader;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * A class loader over a fixed list of library jars, looking classes and resources up through a
+ * directory index instead of searching every jar in turn.
+ * <p>
+ * Each directory (package) maps to the jars containing it, in library order, so finding a class costs
+ * one map lookup plus one entry lookup per jar actually holding that package. Delegation is parent-first,
+ * like a {@link java.net.URLClassLoader}. Jars are only opened when one of their entries is first requested.
+ * <p>
+ * With a {@link LibraryMaterializer}, the jars may not be on disk yet. A missing jar the index already knows
+ * is fetched when a class lookup first hits one of its directories, before the class loading lock is taken,
+ * so only the lookups needing that jar wait for it. A missing jar the index does not know has no directories
+ * to route lookups with, so it is fetched and indexed when the loader is created instead.
+ */
+public class IndexedLibraryClassLoader extends ClassLoader implements Closeable {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final List<Library> libraries = new ArrayList<>();
+    private final Map<String, List<Library>> directories = new ConcurrentHashMap<>();
+    private final LibraryIndex index;
+    private final LibraryMaterializer materializer;
+    private final boolean hasMissing;
+
+    /**
+     * @param parent the class loader to delegate to first
+     * @param files  the library jars, in lookup order
+     * @param index  the index providing the directories of every jar
+     * @throws IOException if a jar had to be indexed and could not be read
+     */
+    public IndexedLibraryClassLoader(ClassLoader parent, Collection<File> files, LibraryIndex index) throws IOException {
+        this(parent, files, index, null);
+    }
+
+    /**
+     * @param parent       the class loader to delegate to first
+     * @param files        the library jars, in lookup order
+     * @param index        the index providing the directories of every jar
+     * @param materializer fetches the jars not on disk yet, or null if every jar is on disk
+     * @throws IOException if a jar had to be indexed and could not be read or fetched
+     */
+    public IndexedLibraryClassLoader(ClassLoader parent, Collection<File> files, LibraryIndex index,
+                                     LibraryMaterializer materializer) throws IOException {
+        super(parent);
+        this.index = index;
+        this.materializer = materializer;
+        boolean hasMissing = false;
+        for (File file : files) {
+            Library library = new Library(file);
+            this.libraries.add(library);
+
+            List<String> libraryDirectories = materializer != null && !file.isFile() ? index.getKnownDirectories(file) : null;
+            if (libraryDirectories != null) {
+                hasMissing = true;
+            } else {
+                if (materializer != null && !file.isFile())
+                    materializer.materialize(file);
+                libraryDirectories = index.getDirectories(file);
+            }
+            addDirectories(library, libraryDirectories);
+        }
+        this.hasMissing = hasMissing;
+    }
+
+    /**
+     * @return the number of indexed directories
+     */
+    public int getDirectoryCount() {
+        return this.directories.size();
+    }
+
+    /**
+     * @return the number of classes this loader defined
+     */
+    public long getDefinedClassCount() {
+        long count = 0;
+        for (Library library : this.libraries)
+            count += library.definedClasses.get();
+        return count;
+    }
+
+    /**
+     * Returns the size of the class files this loader defined from a library, a rough measure of the
+     * metaspace the library takes.
+     *
+     * @param file the library jar
+     * @return the bytes of class files defined from the library, or 0 if it is not part of this loader
+     */
+    public long getDefinedClassBytes(File file) {
+        for (Library library : this.libraries) {
+            if (library.file.equals(file))
+                return library.definedBytes.get();
+        }
+        return 0;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        // fetched before the class loading lock is taken, which the parent delegation below holds throughout
+        if (this.hasMissing)
+            fetchLibraryOf(name.replace('.', '/') + ".class");
+        return super.loadClass(name, resolve);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/') + ".class";
+        try {
+            Class<?> found = findIndexedClass(name, path);
+            if (found != null)
+                return found;
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        return findIndexedResource(name);
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+        List<URL> urls = new ArrayList<>();
+        for (Library library : librariesOf(name)) {
+            try {
+                if (library.getJarFile().getEntry(name) != null)
+                    urls.add(library.getResourceURL(name));
+            } catch (IOException ignored) {
+            }
+        }
+        return Collections.enumeration(urls);
+    }
+
+    private Class<?> findIndexedClass(String name, String path) throws IOException {
+        for (Library library : librariesOf(path)) {
+            JarFile jarFile = library.getJarFile();
+            JarEntry entry = jarFile.getJarEntry(path);
+            if (entry != null)
+                return defineClass(name, library, jarFile, entry);
+        }
+        return null;
+    }
+
+    private URL findIndexedResource(String name) {
+        for (Library library : librariesOf(name)) {
+            try {
+                if (library.getJarFile().getEntry(name) != null)
+                    return library.getResourceURL(name);
+            } catch (IOException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fetches the jars a lookup of the given entry would open, in library order, until one holds the entry.
+     * A failure is left to the lookup itself to report.
+     */
+    private void fetchLibraryOf(String path) {
+        for (Library library : librariesOf(path)) {
+            try {
+                if (library.getJarFile().getEntry(path) != null)
+                    return;
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void addDirectories(Library library, List<String> libraryDirectories) {
+        // copied on write, so lookups iterate the lists without locking
+        for (String directory : libraryDirectories) {
+            this.directories.compute(directory, (key, current) -> {
+                List<Library> updated = current != null ? new ArrayList<>(current) : new ArrayList<>(1);
+                updated.add(library);
+                return updated;
+            });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Library library : this.libraries) {
+            try {
+                library.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private List<Library> librariesOf(String path) {
+        if (path.startsWith("/"))
+            path = path.substring(1);
+
+        int separator = path.lastIndexOf('/');
+        List<Library> libraries = this.directories.get(separator < 0 ? "" : path.substring(0, separator));
+        return libraries != null ? libraries : Collections.emptyList();
+    }
+
+    private Class<?> defineClass(String name, Library library, JarFile jarFile, JarEntry entry) throws IOException {
+        byte[] bytes;
+        try (InputStream inputStream = jarFile.getInputStream(entry)) {
+            bytes = readFully(inputStream, entry.getSize());
+        }
+
+        int separator = name.lastIndexOf('.');
+        if (separator > 0)
+            definePackage(name.substring(0, separator), library.getManifest());
+
+        Class<?> definedClass = defineClass(name, bytes, 0, bytes.length, library.getProtectionDomain());
+        library.definedClasses.incrementAndGet();
+        library.definedBytes.addAndGet(bytes.length);
+        return definedClass;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackage(String packageName, Manifest manifest) {
+        if (getPackage(packageName) != null)
+            return;
+
+        try {
+            if (manifest == null) {
+                definePackage(packageName, null, null, null, null, null, null, null);
+                return;
+            }
+
+            Attributes attributes = manifest.getMainAttributes();
+            definePackage(packageName,
+                    attributes.getValue(Attributes.Name.SPECIFICATION_TITLE),
+                    attributes.getValue(Attributes.Name.SPECIFICATION_VERSION),
+                    attributes.getValue(Attributes.Name.SPECIFICATION_VENDOR),
+                    attributes.getValue(Attributes.Name.IMPLEMENTATION_TITLE),
+                    attributes.getValue(Attributes.Name.IMPLEMENTATION_VERSION),
+                    attributes.getValue(Attributes.Name.IMPLEMENTATION_VENDOR),
+                    null);
+        } catch (IllegalArgumentException ignored) {
+            // defined concurrently by another thread
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream, long size) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+        byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1)
+            out.write(buffer, 0, bytesRead);
+        return out.toByteArray();
+    }
+
+    private class Library implements Closeable {
+        private final File file;
+        private final URL url;
+        private final ProtectionDomain protectionDomain;
+        private final AtomicLong definedClasses = new AtomicLong();
+        private final AtomicLong definedBytes = new AtomicLong();
+        private volatile JarFile jarFile;
+        private Manifest manifest;
+
+        private Library(File file) throws MalformedURLException {
+            this.file = file;
+            this.url = file.toURI().toURL();
+            this.protectionDomain = new ProtectionDomain(new CodeSource(this.url, (CodeSigner[]) null), null,
+                    IndexedLibraryClassLoader.this, null);
+        }
+
+        private JarFile getJarFile() throws IOException {
+            JarFile jarFile = this.jarFile;
+            if (jarFile != null)
+                return jarFile;
+
+            // fetched without holding this library's lock; the materializer merges concurrent fetches of one jar
+            if (materializer != null && !this.file.isFile())
+                materializer.materialize(this.file);
+            synchronized (this) {
+                if (this.jarFile == null) {
+                    JarFile opened = new JarFile(this.file);
+                    this.manifest = opened.getManifest();
+                    this.jarFile = opened;
+                }
+                return this.jarFile;
+            }
+        }
+
+        private synchronized Manifest getManifest() {
+            return this.manifest;
+        }
+
+        private ProtectionDomain getProtectionDomain() {
+            return this.protectionDomain;
+        }
+
+        private URL getResourceURL(String name) throws MalformedURLException {
+            return new URL("jar:" + this.url + "!/" + (name.startsWith("/") ? name.substring(1) : name));
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (this.jarFile != null)
+                this.jarFile.close();
+            this.jarFile = null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.theprogmatheus.craftlib.core.classloader;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Persists which directories (packages) every library jar contains, so a {@link IndexedLibraryClassLoader}
+ * can be built without opening the jars.
+ * <p>
+ * An indexed jar is keyed by its absolute path and only reused while it keeps the same size and
+ * modification time; otherwise its entries are listed again.
+ */
+public class LibraryIndex {
+
+    private static final String HEADER = "# CraftLib library index v1 - generated, do not edit";
+    private static final String ROOT_DIRECTORY = "/";
+
+    @Getter
+    private final File file;
+    private final Map<String, IndexedJar> jars = new ConcurrentHashMap<>();
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private LibraryIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the index from disk. A missing or unreadable index results in an empty one.
+     *
+     * @param file the index location
+     * @return the loaded index
+     */
+    public static LibraryIndex load(File file) {
+        LibraryIndex index = new LibraryIndex(file);
+        if (!file.isFile())
+            return index;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\t");
+                if (parts.length < 3)
+                    continue;
+                try {
+                    List<String> directories = new ArrayList<>(parts.length - 3);
+                    for (int i = 3; i < parts.length; i++)
+                        directories.add(ROOT_DIRECTORY.equals(parts[i]) ? "" : parts[i]);
+                    index.jars.put(parts[0], new IndexedJar(Long.parseLong(parts[1]), Long.parseLong(parts[2]), directories));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+            index.jars.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the directories holding at least one file in the given jar, e.g. {@code com/google/common/base}.
+     * The root directory is the empty string.
+     *
+     * @param jar the library jar
+     * @return the directories of the jar
+     * @throws IOException if the jar had to be indexed and could not be read
+     */
+    public List<String> getDirectories(File jar) throws IOException {
+        String path = jar.getAbsolutePath();
+        IndexedJar indexed = this.jars.get(path);
+        if (this.statistics.record(indexed != null && indexed.size == jar.length() && indexed.lastModified == jar.lastModified()))
+            return indexed.directories;
+
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        Set<String> directories = new TreeSet<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory())
+                    continue;
+
+                int separator = entry.getName().lastIndexOf('/');
+                directories.add(separator < 0 ? "" : entry.getName().substring(0, separator));
+            }
+        }
+
+        indexed = new IndexedJar(size, lastModified, Collections.unmodifiableList(new ArrayList<>(directories)));
+        this.jars.put(path, indexed);
+        return indexed.directories;
+    }
+
+    /**
+     * Returns the directories last indexed for a jar, without reading or even requiring the jar,
+     * e.g. for a library that is not fetched yet.
+     *
+     * @param jar the library jar
+     * @return the indexed directories, or null if the jar was never indexed
+     */
+    public List<String> getKnownDirectories(File jar) {
+        IndexedJar indexed = this.jars.get(jar.getAbsolutePath());
+        return indexed != null ? indexed.directories : null;
+    }
+
+    /**
+     * Keeps only the given jars, dropping the libraries that are no longer used.
+     *
+     * @param jars the jars to keep
+     */
+    public void retain(Collection<File> jars) {
+        Set<String> paths = new HashSet<>();
+        jars.forEach(jar -> paths.add(jar.getAbsolutePath()));
+        this.jars.keySet().retainAll(paths);
+    }
+
+    /**
+     * Writes the index to disk, replacing the previous one atomically.
+     *
+     * @throws IOException if the index could not be written
+     */
+    public synchronized void save() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        File temp = new File(parent, this.file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, IndexedJar> entry : new TreeMap<>(this.jars).entrySet()) {
+                IndexedJar indexed = entry.getValue();
+                writer.write(entry.getKey() + "\t" + indexed.size + "\t" + indexed.lastModified);
+                for (String directory : indexed.directories) {
+                    writer.write('\t');
+                    writer.write(directory.isEmpty() ? ROOT_DIRECTORY : directory);
+                }
+                writer.write('\n');
+            }
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @RequiredArgsConstructor
+    private static class IndexedJar {
+        private final long size;
+        private final long lastModified;
+        private final List<String> directories;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.theprogmatheus.craftlib.core.classloader;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Brings a library jar that was resolved but not fetched yet onto the disk, on first use.
+ */
+@FunctionalInterface
+public interface LibraryMaterializer {
+
+    /**
+     * Fetches the library, if it is not on disk yet.
+     *
+     * @param file the location the library is expected at
+     * @throws IOException if the library could not be fetched
+     */
+    void materialize(File file) throws IOException;
+}
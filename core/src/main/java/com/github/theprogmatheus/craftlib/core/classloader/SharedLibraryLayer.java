@@ -0,0 +1,139 @@
+package com.github.theprogmatheus.craftlib.core.classloader;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Splits the libraries of several targets into one shared layer and the libraries every target keeps isolated.
+ * <p>
+ * A library file is shared when at least two targets use it, no target uses another version of the same
+ * artifact, and every artifact that could be one of its dependencies is shared too. Libraries are laid out
+ * as {@code <group>/<artifactId>/<version>/<file>}, so the artifact is the grandparent folder and two files of it
+ * are two versions. The dependencies of a library are not known here, but a transitive dependency is always
+ * used by every target using the library, so any artifact used by all of them is treated as a possible one.
+ *
+ * @param <T> the type of target the libraries belong to
+ */
+@Getter
+public class SharedLibraryLayer<T> {
+
+    private final List<File> sharedFiles;
+    private final Map<T, List<File>> isolatedFiles;
+    /**
+     * The targets using at least one shared library; only those should see the shared layer.
+     */
+    private final Set<T> sharingTargets;
+    private final Map<File, Integer> users;
+
+    private SharedLibraryLayer(List<File> sharedFiles, Map<T, List<File>> isolatedFiles, Set<T> sharingTargets, Map<File, Integer> users) {
+        this.sharedFiles = sharedFiles;
+        this.isolatedFiles = isolatedFiles;
+        this.sharingTargets = sharingTargets;
+        this.users = users;
+    }
+
+    /**
+     * Plans the shared layer of the given targets.
+     *
+     * @param libraries the library files of each target, in lookup order
+     * @param <T>       the type of target
+     * @return the planned layer
+     */
+    public static <T> SharedLibraryLayer<T> plan(Map<T, ? extends Collection<File>> libraries) {
+        Map<File, Set<T>> targetsByFile = new LinkedHashMap<>();
+        Map<File, Set<File>> filesByArtifact = new HashMap<>();
+        Map<T, Set<File>> artifactsByTarget = new HashMap<>();
+
+        libraries.forEach((target, files) -> {
+            Set<File> artifacts = new HashSet<>();
+            for (File file : files) {
+                File absolute = file.getAbsoluteFile();
+                targetsByFile.computeIfAbsent(absolute, key -> new LinkedHashSet<>()).add(target);
+                filesByArtifact.computeIfAbsent(getArtifact(absolute), key -> new HashSet<>()).add(absolute);
+                artifacts.add(getArtifact(absolute));
+            }
+            artifactsByTarget.put(target, artifacts);
+        });
+
+        Set<File> shared = new LinkedHashSet<>();
+        targetsByFile.forEach((file, targets) -> {
+            if (targets.size() > 1 && filesByArtifact.get(getArtifact(file)).size() == 1)
+                shared.add(file);
+        });
+
+        // drop the libraries that might depend on an isolated artifact, until none is left
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<File> iterator = shared.iterator(); iterator.hasNext(); ) {
+                File file = iterator.next();
+                if (!isClosed(targetsByFile.get(file), artifactsByTarget, filesByArtifact, shared)) {
+                    iterator.remove();
+                    changed = true;
+                }
+            }
+        }
+
+        Map<T, List<File>> isolated = new LinkedHashMap<>();
+        Set<T> sharingTargets = new HashSet<>();
+        Map<File, Integer> users = new HashMap<>();
+        libraries.forEach((target, files) -> {
+            List<File> targetFiles = new ArrayList<>();
+            for (File file : files) {
+                if (!shared.contains(file.getAbsoluteFile()))
+                    targetFiles.add(file);
+                else
+                    sharingTargets.add(target);
+            }
+            isolated.put(target, targetFiles);
+        });
+        shared.forEach(file -> users.put(file, targetsByFile.get(file).size()));
+
+        return new SharedLibraryLayer<>(new ArrayList<>(shared), isolated, sharingTargets, users);
+    }
+
+    /**
+     * @param target a target
+     * @return whether the target uses a shared library, so it needs the shared layer as its parent
+     */
+    public boolean isSharing(T target) {
+        return this.sharingTargets.contains(target);
+    }
+
+    /**
+     * @param file a shared library
+     * @return how many targets use the library, or 0 if it is not shared
+     */
+    public int getUsers(File file) {
+        return this.users.getOrDefault(file.getAbsoluteFile(), 0);
+    }
+
+    private static <T> boolean isClosed(Set<T> targets, Map<T, Set<File>> artifactsByTarget,
+                                        Map<File, Set<File>> filesByArtifact, Set<File> shared) {
+        Set<File> common = null;
+        for (T target : targets) {
+            if (common == null)
+                common = new HashSet<>(artifactsByTarget.get(target));
+            else
+                common.retainAll(artifactsByTarget.get(target));
+        }
+        if (common == null)
+            return true;
+
+        for (File artifact : common) {
+            for (File file : filesByArtifact.get(artifact)) {
+                if (!shared.contains(file))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static File getArtifact(File file) {
+        File version = file.getParentFile();
+        File artifact = version != null ? version.getParentFile() : null;
+        return artifact != null ? artifact : file;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.classloader.LibraryMaterializer;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the artifacts of a collected dependency graph whose jars were not fetched yet,
+ * and resolves one of them once its jar is first needed.
+ */
+@RequiredArgsConstructor
+public class LazyArtifactResolver implements LibraryMaterializer {
+
+    private final MavenResolverContext context;
+    private final Map<File, ArtifactRequest> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger materialized = new AtomicInteger();
+
+    /**
+     * Registers an artifact whose jar is not on disk yet.
+     *
+     * @param file         the location of the artifact in the local repository
+     * @param artifact     the artifact
+     * @param repositories the repositories the artifact was found in while collecting the graph
+     */
+    public void register(File file, Artifact artifact, List<RemoteRepository> repositories) {
+        this.pending.put(file.getAbsoluteFile(), new ArtifactRequest(artifact, repositories, null));
+    }
+
+    /**
+     * @return the number of registered artifacts not fetched yet
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * @return the number of artifacts fetched on demand
+     */
+    public int getMaterializedCount() {
+        return this.materialized.get();
+    }
+
+    /**
+     * Fetches several registered artifacts through one request, so their downloads run concurrently.
+     * Files already on disk or not registered are skipped.
+     *
+     * @param files the locations of the artifacts in the local repository
+     * @throws IOException if an artifact could not be fetched; the others are fetched anyway
+     */
+    public void materializeAll(Collection<File> files) throws IOException {
+        Map<File, ArtifactRequest> requests = new LinkedHashMap<>();
+        for (File file : files) {
+            ArtifactRequest request = this.pending.get(file.getAbsoluteFile());
+            if (request != null && !file.isFile())
+                requests.put(file.getAbsoluteFile(), request);
+        }
+        if (requests.isEmpty())
+            return;
+
+        IOException failure = null;
+        try {
+            this.context.getRepositorySystem().resolveArtifacts(this.context.getSession(), requests.values());
+        } catch (ArtifactResolutionException e) {
+            failure = new IOException(String.format("Could not fetch %s of %s artifacts", e.getResults().stream().filter(result -> !result.isResolved()).count(),
+                    requests.size()), e);
+        }
+
+        for (File file : requests.keySet()) {
+            if (file.isFile() && this.pending.remove(file) != null)
+                this.materialized.incrementAndGet();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public void materialize(File file) throws IOException {
+        if (file.isFile())
+            return;
+
+        ArtifactRequest request = this.pending.get(file.getAbsoluteFile());
+        if (request == null)
+            throw new IOException("No pending artifact for " + file);
+
+        synchronized (request) {
+            if (file.isFile())
+                return;
+            try {
+                File resolved = this.context.getRepositorySystem().resolveArtifact(this.context.getSession(), request).getArtifact().getFile();
+                if (!resolved.getAbsoluteFile().equals(file.getAbsoluteFile()))
+                    throw new IOException(String.format("%s was resolved to %s instead of %s", request.getArtifact(), resolved, file));
+            } catch (ArtifactResolutionException e) {
+                throw new IOException("Could not fetch " + request.getArtifact(), e);
+            }
+        }
+        this.pending.remove(file.getAbsoluteFile());
+        this.materialized.incrementAndGet();
+    }
+}
@@ -1,25 +1,26 @@
 package com.github.theprogmatheus.craftlib.core.maven;
 
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
 import lombok.Getter;
-import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
-import org.eclipse.aether.DefaultRepositorySystemSession;
+import lombok.Setter;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.collection.CollectRequest;
-import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionException;
 import org.eclipse.aether.graph.Dependency;
-import org.eclipse.aether.impl.DefaultServiceLocator;
-import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.resolution.DependencyRequest;
 import org.eclipse.aether.resolution.DependencyResolutionException;
-import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
-import org.eclipse.aether.spi.connector.transport.TransporterFactory;
-import org.eclipse.aether.transport.file.FileTransporterFactory;
-import org.eclipse.aether.transport.http.HttpTransporterFactory;
+import org.eclipse.aether.resolution.DependencyResult;
 import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.graph.visitor.PreorderNodeListGenerator;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -29,18 +30,29 @@ import java.util.stream.Collectors;
 @Getter
 public class MavenDependencyResolver {
 
+    private final MavenResolverContext context;
     private final RepositorySystem repoSystem;
     private final RepositorySystemSession session;
     private final List<RemoteRepository> repositories;
+    /**
+     * The owner the collection and download times are recorded for in the context's {@link LibraryMetrics}.
+     */
+    @Setter
+    private String owner = LibraryMetrics.GLOBAL;
 
     public MavenDependencyResolver(File librariesFolder) {
         this(librariesFolder, new ArrayList<>());
     }
 
     public MavenDependencyResolver(File librariesFolder, List<RemoteRepository> repositories) {
-        this.repoSystem = newRepositorySystem();
-        this.session = newSession(this.repoSystem, librariesFolder);
-        this.repositories = repositories;
+        this(MavenResolverContext.of(librariesFolder), repositories);
+    }
+
+    public MavenDependencyResolver(MavenResolverContext context, List<RemoteRepository> repositories) {
+        this.context = context;
+        this.repoSystem = context.getRepositorySystem();
+        this.session = context.getSession();
+        this.repositories = context.configureRepositories(repositories);
     }
 
 
@@ -50,27 +62,100 @@ public class MavenDependencyResolver {
         CollectRequest collectRequest = new CollectRequest();
         collectRequest.setRoot(dependency);
         collectRequest.setRepositories(repositories);
+        collectRequest.setTrace(TransferEventRecorder.trace(owner));
+
+        try (LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.RESOLVE)) {
+            event.set("plugin", owner).set("coordinates", dependencyCoords);
+            DependencyRequest dependencyRequest = new DependencyRequest(collectRequest, null);
+            List<ArtifactResult> results = resolve(dependencyRequest).getArtifactResults();
+            event.set("artifacts", results.size());
+
+            return results.stream().map(result -> result.getArtifact().getFile()).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Collects the dependency graph of the given coordinates without fetching the jars that are not
+     * in the local repository yet; those are registered in the context's {@link LazyArtifactResolver}.
+     *
+     * @param dependencyCoords the coordinates of the root dependency
+     * @return the files of the graph's artifacts in the local repository, present or not
+     * @throws DependencyCollectionException if the graph could not be collected
+     */
+    public List<File> collectDependencies(String dependencyCoords) throws DependencyCollectionException {
+        Dependency dependency = new Dependency(new DefaultArtifact(dependencyCoords), JavaScopes.RUNTIME);
+
+        CollectRequest collectRequest = new CollectRequest();
+        collectRequest.setRoot(dependency);
+        collectRequest.setRepositories(repositories);
+        collectRequest.setTrace(TransferEventRecorder.trace(owner));
 
-        DependencyRequest dependencyRequest = new DependencyRequest(collectRequest, null);
-        List<ArtifactResult> results = repoSystem.resolveDependencies(session, dependencyRequest).getArtifactResults();
+        PreorderNodeListGenerator nodes = new PreorderNodeListGenerator();
+        try (LibraryMetrics.Timing ignored = context.getMetrics().time(owner, LibraryMetrics.Phase.COLLECT);
+             LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.COLLECT)) {
+            event.set("plugin", owner).set("coordinates", dependencyCoords);
+            collect(collectRequest).getRoot().accept(nodes);
+        }
 
-        return results.stream().map(result -> result.getArtifact().getFile()).collect(Collectors.toList());
+        LocalRepositoryManager localRepositoryManager = session.getLocalRepositoryManager();
+        List<File> files = new ArrayList<>();
+        for (DependencyNode node : nodes.getNodes()) {
+            if (node.getDependency() == null)
+                continue;
+
+            Artifact artifact = node.getArtifact();
+            File file = new File(localRepositoryManager.getRepository().getBasedir(), localRepositoryManager.getPathForLocalArtifact(artifact));
+            if (!file.isFile())
+                context.getLazyArtifacts().register(file, artifact, node.getRepositories());
+            files.add(file);
+        }
+        return files;
     }
 
+    private CollectResult collect(CollectRequest collectRequest) throws DependencyCollectionException {
+        List<RepositorySystemSession> sessions = context.getSessions();
+        for (int i = 0; i < sessions.size() - 1; i++) {
+            try {
+                return repoSystem.collectDependencies(sessions.get(i), collectRequest);
+            } catch (DependencyCollectionException ignored) {
+            }
+        }
+        return repoSystem.collectDependencies(sessions.get(sessions.size() - 1), collectRequest);
+    }
 
-    private RepositorySystem newRepositorySystem() {
-        DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
-        locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
-        locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
-        locator.addService(TransporterFactory.class, FileTransporterFactory.class);
-        return locator.getService(RepositorySystem.class);
+    /**
+     * Resolves the request with each session of the context in turn, so an offline-first
+     * context only reaches the network when the local repository cannot satisfy the graph.
+     * The graph is collected first and its artifacts fetched after, so both phases are timed apart.
+     */
+    private DependencyResult resolve(DependencyRequest dependencyRequest) throws DependencyResolutionException {
+        List<RepositorySystemSession> sessions = context.getSessions();
+        for (int i = 0; i < sessions.size() - 1; i++) {
+            try {
+                return resolve(sessions.get(i), dependencyRequest);
+            } catch (DependencyResolutionException ignored) {
+            }
+        }
+        return resolve(sessions.get(sessions.size() - 1), dependencyRequest);
     }
 
-    private RepositorySystemSession newSession(RepositorySystem system, File repoFolder) {
-        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
-        LocalRepository localRepo = new LocalRepository(repoFolder); // ou seu "librariesFolder"
-        session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
-        return session;
+    private DependencyResult resolve(RepositorySystemSession session, DependencyRequest dependencyRequest) throws DependencyResolutionException {
+        LibraryMetrics metrics = context.getMetrics();
+        CollectRequest collectRequest = dependencyRequest.getCollectRequest();
+        CollectResult collectResult;
+        try (LibraryMetrics.Timing ignored = metrics.time(owner, LibraryMetrics.Phase.COLLECT);
+             LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.COLLECT)) {
+            event.set("plugin", owner).set("coordinates", String.valueOf(collectRequest.getRoot().getArtifact()));
+            collectResult = repoSystem.collectDependencies(session, collectRequest);
+        } catch (DependencyCollectionException e) {
+            throw new DependencyResolutionException(new DependencyResult(dependencyRequest), e);
+        }
+
+        try (LibraryMetrics.Timing ignored = metrics.time(owner, LibraryMetrics.Phase.DOWNLOAD)) {
+            DependencyRequest artifactsRequest = new DependencyRequest(collectResult.getRoot(), dependencyRequest.getFilter());
+            artifactsRequest.setTrace(collectRequest.getTrace());
+            return repoSystem.resolveDependencies(session, artifactsRequest);
+        }
     }
 
 }
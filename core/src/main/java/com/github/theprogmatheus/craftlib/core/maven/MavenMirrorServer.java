@@ -0,0 +1,443 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import com.github.theprogmatheus.craftlib.core.utils.DaemonThreadFactory;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves a local Maven repository over HTTP as a read-through caching proxy of upstream repositories,
+ * so a fleet of servers using it as their {@link MavenResolverSettings#getMirrorUrl() mirror} downloads
+ * every artifact from the internet only once.
+ * <p>
+ * Files already in the local repository are served as they are. Missing files are fetched from the
+ * upstream repositories in order, written next to their final location, checked against the {@code .sha1}
+ * the upstream publishes for them and only then moved into place and served; concurrent requests for the same
+ * file share one download. The upstream {@code .sha1} is kept and served with the file, so clients still check
+ * what they receive against the upstream. Other checksums, and the ones of files the upstream publishes no
+ * checksum for or that were already in the local repository, are computed from the files themselves.
+ * {@code maven-metadata.xml} files are taken from the first upstream that has them and refreshed once older
+ * than the metadata time to live; they are not merged across upstreams.
+ * <p>
+ * Besides running inside a server, the mirror can run as a standalone process:
+ * <pre>{@code java -cp craftlib.jar com.github.theprogmatheus.craftlib.core.maven.MavenMirrorServer <repository folder> [port] [address]}</pre>
+ */
+public class MavenMirrorServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8585;
+
+    private static final String METADATA_FILE = "maven-metadata.xml";
+    private static final String[] CHECKSUM_ALGORITHMS = {"sha1", "SHA-1", "md5", "MD5", "sha256", "SHA-256", "sha512", "SHA-512"};
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    @Getter
+    private final File localRepository;
+    @Getter
+    private final List<LibraryRepository> upstreams;
+    private final long metadataTtlMillis;
+    private final Logger logger;
+    private final NegativeLookupCache upstreamMisses;
+    private final Map<String, CompletableFuture<File>> downloads = new ConcurrentHashMap<>();
+    /**
+     * Hits are requests served from the local repository, misses the ones fetched from an upstream.
+     */
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param localRepository   the local repository served and filled by the mirror
+     * @param upstreams         the repositories missing files are fetched from, in order
+     * @param metadataTtlMillis how long a fetched {@code maven-metadata.xml} is served before being fetched again
+     * @param logger            the logger reporting upstream failures
+     */
+    public MavenMirrorServer(File localRepository, List<LibraryRepository> upstreams, long metadataTtlMillis, Logger logger) {
+        this.localRepository = localRepository.getAbsoluteFile();
+        this.upstreams = upstreams;
+        this.metadataTtlMillis = Math.max(0, metadataTtlMillis);
+        this.logger = logger;
+        // repeated requests for files no upstream has are common, e.g. sources and optional classifiers
+        this.upstreamMisses = new NegativeLookupCache(TimeUnit.MINUTES.toMillis(10));
+    }
+
+    /**
+     * Starts serving on the given address.
+     *
+     * @param address the address and port to listen on
+     * @param threads the number of requests handled at the same time
+     * @throws IOException if the address cannot be bound
+     */
+    public void start(InetSocketAddress address, int threads) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("CraftLib-Mirror"));
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * @return the address the mirror listens on, or null if it is not started
+     */
+    public InetSocketAddress getAddress() {
+        return this.server != null ? this.server.getAddress() : null;
+    }
+
+    @Override
+    public void close() {
+        if (this.server != null)
+            this.server.stop(0);
+        if (this.executor != null)
+            this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+                return;
+            }
+
+            String path = toRepositoryPath(exchange.getRequestURI().getPath());
+            File file = path != null ? find(path) : null;
+            if (file == null) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                return;
+            }
+            send(exchange, file, head);
+        } catch (IOException e) {
+            logger.log(Level.FINE, String.format("Mirror request %s failed", exchange.getRequestURI()), e);
+            // a failure while sending the body can only cut the response short
+            if (exchange.getResponseCode() == -1)
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_GATEWAY, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the local file for a repository path, fetching it from the upstreams if needed.
+     *
+     * @return the file, or null if neither the local repository nor any upstream has it
+     */
+    private File find(String path) throws IOException {
+        File file = new File(this.localRepository, path.replace('/', File.separatorChar));
+        File checksum = checksumOfLocalFile(file);
+        if (checksum != null) {
+            this.statistics.hit();
+            return checksum;
+        }
+
+        boolean metadata = file.getName().equals(METADATA_FILE);
+        boolean fresh = file.isFile() && (!metadata || System.currentTimeMillis() - file.lastModified() < this.metadataTtlMillis);
+        if (this.statistics.record(fresh))
+            return file;
+
+        try {
+            return fetch(path, file);
+        } catch (IOException e) {
+            // stale metadata is still better than none when the upstreams are unreachable
+            if (metadata && file.isFile())
+                return file;
+            throw e;
+        }
+    }
+
+    /**
+     * Checksum files are rarely kept in a local repository, so they are computed from the file they describe,
+     * and computed again once that file changed, e.g. refreshed metadata.
+     *
+     * @return the checksum file, or null if the file is no checksum of a local file
+     */
+    private File checksumOfLocalFile(File file) throws IOException {
+        String name = file.getName();
+        for (int i = 0; i < CHECKSUM_ALGORITHMS.length; i += 2) {
+            String extension = "." + CHECKSUM_ALGORITHMS[i];
+            if (!name.endsWith(extension))
+                continue;
+
+            File target = new File(file.getParentFile(), name.substring(0, name.length() - extension.length()));
+            if (!target.isFile())
+                return null;
+            // includes the upstream checksum written right after the file it describes was moved into place
+            if (file.isFile() && file.lastModified() >= target.lastModified())
+                return file;
+
+            writeAtomically(file, digest(target, CHECKSUM_ALGORITHMS[i + 1]));
+            return file;
+        }
+        return null;
+    }
+
+    private static boolean isChecksum(String name) {
+        for (int i = 0; i < CHECKSUM_ALGORITHMS.length; i += 2) {
+            if (name.endsWith("." + CHECKSUM_ALGORITHMS[i]))
+                return true;
+        }
+        return false;
+    }
+
+    private File fetch(String path, File file) throws IOException {
+        CompletableFuture<File> download = new CompletableFuture<>();
+        CompletableFuture<File> running = this.downloads.putIfAbsent(path, download);
+        if (running != null)
+            return await(running);
+
+        try {
+            File fetched = download(path, file);
+            download.complete(fetched);
+            return fetched;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.downloads.remove(path, download);
+        }
+    }
+
+    private File download(String path, File file) throws IOException {
+        IOException lastError = null;
+        for (LibraryRepository upstream : this.upstreams) {
+            String upstreamUrl = upstream.getUri().toString();
+            if (this.upstreamMisses.isKnownMiss(upstreamUrl, path))
+                continue;
+
+            try {
+                URL url = new URL(upstreamUrl.endsWith("/") ? upstreamUrl + path : upstreamUrl + "/" + path);
+                if (download(url, file)) {
+                    logger.fine(String.format("Mirrored %s from %s", path, upstream.getName()));
+                    return file;
+                }
+                this.upstreamMisses.recordMiss(upstreamUrl, path);
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+
+        if (lastError != null)
+            throw lastError;
+        return null;
+    }
+
+    private boolean download(URL url, File file) throws IOException {
+        File folder = file.getParentFile();
+        folder.mkdirs();
+        File temp = File.createTempFile(file.getName(), ".tmp", folder);
+        try {
+            if (!transfer(url, temp))
+                return false;
+
+            // checksum files are served as published, everything else must match the checksum published next to it
+            String checksum = isChecksum(file.getName()) ? null : fetchChecksum(new URL(url + ".sha1"));
+            if (checksum != null) {
+                String actual = digest(temp, "SHA-1");
+                if (!checksum.equals(actual))
+                    throw new IOException(String.format("Checksum mismatch for %s: expected %s but was %s", url, checksum, actual));
+            }
+
+            FileUtils.moveAtomically(temp, file);
+            if (checksum != null)
+                writeAtomically(new File(folder, file.getName() + ".sha1"), checksum);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * @return the SHA-1 published at the given location, or null if there is none
+     */
+    private String fetchChecksum(URL url) throws IOException {
+        HttpURLConnection connection = connect(url);
+        try {
+            if (!isFound(connection, url))
+                return null;
+
+            String content;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "US-ASCII"))) {
+                content = reader.readLine();
+            }
+            // some repositories publish the file name after the checksum
+            String checksum = content != null ? content.trim().split("\\s+")[0].toLowerCase(Locale.ROOT) : "";
+            if (!checksum.matches("[0-9a-f]{40}"))
+                throw new IOException("Invalid checksum at " + url);
+            return checksum;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Writes the content at the given location into the given file.
+     *
+     * @return whether the upstream has the content
+     */
+    private boolean transfer(URL url, File file) throws IOException {
+        HttpURLConnection connection = connect(url);
+        try {
+            if (!isFound(connection, url))
+                return false;
+
+            try (InputStream in = connection.getInputStream()) {
+                Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection connect(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("User-Agent", "CraftLib Mirror");
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    private static boolean isFound(HttpURLConnection connection, URL url) throws IOException {
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE)
+            return false;
+        if (status != HttpURLConnection.HTTP_OK)
+            throw new IOException("Failed to download " + url + ": HTTP " + status);
+        return true;
+    }
+
+    private static void writeAtomically(File file, String content) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "US-ASCII")) {
+                writer.write(content);
+            }
+            FileUtils.moveAtomically(temp, file);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void send(HttpExchange exchange, File file, boolean head) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", file.getName().endsWith(".xml") || file.getName().endsWith(".pom")
+                ? "text/xml" : "application/octet-stream");
+        exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(file.lastModified()).atZone(ZoneOffset.UTC)));
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(file.length()));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            return;
+        }
+
+        try (InputStream in = new FileInputStream(file)) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, file.length());
+            OutputStream out = exchange.getResponseBody();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Turns a request path into a relative repository path, refusing anything that could leave the
+     * repository folder and the resolver's own bookkeeping files.
+     *
+     * @return the repository path, or null if it must not be served
+     */
+    static String toRepositoryPath(String requestPath) {
+        if (requestPath == null || requestPath.indexOf('\\') >= 0 || requestPath.indexOf('\0') >= 0)
+            return null;
+
+        String path = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+        if (path.isEmpty() || path.endsWith("/"))
+            return null;
+        for (String segment : path.split("/", -1)) {
+            // hidden folders hold bookkeeping such as the .locks of a shared repository
+            if (segment.isEmpty() || segment.startsWith("."))
+                return null;
+        }
+
+        String name = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        if (name.endsWith(".tmp") || name.endsWith(".lastupdated") || name.endsWith(".properties")
+                || name.equals("_remote.repositories") || (name.startsWith("maven-metadata-") && !name.startsWith(METADATA_FILE)))
+            return null;
+        return path;
+    }
+
+    private static String digest(File file, String algorithm) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static File await(CompletableFuture<File> download) throws IOException {
+        try {
+            return download.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Runs a standalone mirror of the {@link LibraryRepository#ALL default repositories}.
+     *
+     * @param args the local repository folder, then optionally the port and the address to listen on, by default
+     *             the loopback address
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: MavenMirrorServer <repository folder> [port] [address]");
+            System.exit(1);
+        }
+
+        File folder = new File(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        InetSocketAddress address = args.length > 2 ? new InetSocketAddress(args[2], port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        Logger logger = Logger.getLogger("CraftLib");
+
+        MavenMirrorServer mirror = new MavenMirrorServer(folder, LibraryRepository.ALL, TimeUnit.MINUTES.toMillis(10), logger);
+        mirror.start(address, Runtime.getRuntime().availableProcessors() * 4);
+        logger.info(String.format("Mirroring the default repositories into %s on %s", mirror.getLocalRepository(), mirror.getAddress()));
+        Runtime.getRuntime().addShutdownHook(new Thread(mirror::close));
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
+import com.github.theprogmatheus.craftlib.core.utils.DaemonThreadFactory;
+import lombok.Getter;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositoryCache;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.impl.RemoteRepositoryFilterManager;
+import org.eclipse.aether.internal.impl.filter.DefaultRemoteRepositoryFilterManager;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.filter.RemoteRepositoryFilterSource;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.TransferListener;
+import org.eclipse.aether.transport.file.FileTransporterFactory;
+import org.eclipse.aether.transport.http.HttpTransporterFactory;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
+import org.eclipse.aether.util.repository.SimpleArtifactDescriptorPolicy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide Maven resolver state shared by every {@link MavenDependencyResolver}.
+ * <p>
+ * A single {@link RepositorySystem} is created per process, and a single session is created per
+ * local repository folder. The session carries a {@link DefaultRepositoryCache}, so POMs, metadata
+ * and artifact descriptors read while resolving one plugin are reused by every other plugin that
+ * resolves against the same local repository.
+ * <p>
+ * When {@link MavenResolverSettings#isOfflineFirst() offline-first} is enabled, an additional offline
+ * session is kept, with its own cache so local misses never leak into the online session.
+ * <p>
+ * The context also owns the download pool used to resolve several root libraries concurrently,
+ * and the {@link TransferStatistics} collected from every transfer of its sessions.
+ * <p>
+ * Lookups in the {@link LibraryRepository#ALL default repositories} are narrowed by the configured
+ * {@link RepositoryRoutes}, and the default repositories are ordered by the {@link RepositoryStatistics}
+ * measured on previous starts. Artifacts a repository recently answered "not found" for are skipped
+ * in that repository, see {@link NegativeLookupCache}.
+ * <p>
+ * A {@link MavenResolverSettings#isSharedRepository() shared} local repository is guarded by file locks, so several
+ * server processes can resolve into it at once. Artifacts are always written to a temp file and moved into place,
+ * so the lockfile and the library classloaders read the artifacts already there without taking any lock.
+ * <p>
+ * With {@link MavenResolverSettings#isLazyArtifacts() lazy artifacts}, the jars left out of a collected graph
+ * are remembered by the {@link LazyArtifactResolver}, which fetches them on demand.
+ * <p>
+ * Everything measured while resolving and loading against this context is gathered in its {@link LibraryMetrics}.
+ */
+@Getter
+public class MavenResolverContext {
+
+    /**
+     * Repository id of the configured {@link MavenResolverSettings#getMirrorUrl() mirror}.
+     */
+    public static final String MIRROR_ID = "CraftLib Mirror";
+
+    private static final long SHARED_LOCK_TIMEOUT_SECONDS = 300;
+
+    private static final Map<File, MavenResolverContext> CONTEXTS = new ConcurrentHashMap<>();
+    private static volatile RepositorySystem sharedRepositorySystem;
+
+    private final File localRepository;
+    private final MavenResolverSettings settings;
+    private final RepositorySystem repositorySystem;
+    private final RepositorySystemSession session;
+    private final RepositorySystemSession offlineSession;
+    private final TransferStatistics transferStatistics;
+    private final RepositoryStatistics repositoryStatistics;
+    private final NegativeLookupCache negativeLookupCache;
+    private final LazyArtifactResolver lazyArtifacts;
+    private final LibraryMetrics metrics;
+    private final ExecutorService downloadExecutor;
+
+    private MavenResolverContext(File localRepository, MavenResolverSettings settings) {
+        this.localRepository = localRepository;
+        this.settings = settings;
+        this.transferStatistics = new TransferStatistics();
+        this.repositoryStatistics = new RepositoryStatistics();
+        this.negativeLookupCache = new NegativeLookupCache(TimeUnit.MINUTES.toMillis(settings.getNegativeCacheTtl()));
+        this.repositorySystem = getSharedRepositorySystem();
+        this.lazyArtifacts = new LazyArtifactResolver(this);
+        this.metrics = new LibraryMetrics(this.transferStatistics);
+        this.metrics.registerCache("negative-lookup", this.negativeLookupCache.getStatistics());
+
+        TransferListener transferListener = LibraryEvent.isAvailable()
+                ? new ChainedTransferListener(this.transferStatistics, this.repositoryStatistics, new TransferEventRecorder())
+                : new ChainedTransferListener(this.transferStatistics, this.repositoryStatistics);
+        this.session = newSession(this.repositorySystem, localRepository, settings, transferListener, this.negativeLookupCache, false);
+        this.offlineSession = settings.isOfflineFirst() ? newSession(this.repositorySystem, localRepository, settings, transferListener, this.negativeLookupCache, true) : null;
+
+        // SNAPSHOT URIs of the legacy download path are built statically, outside of any context
+        SnapshotMetadataResolver.setCacheFolder(localRepository);
+        SnapshotMetadataResolver.setTtlMillis(TimeUnit.MINUTES.toMillis(settings.getSnapshotMetadataTtl()));
+
+        this.downloadExecutor = Executors.newFixedThreadPool(Math.max(1, settings.getDownloadThreads()), new DaemonThreadFactory("CraftLib-Download"));
+    }
+
+    /**
+     * Returns the shared context for the given local repository folder, whatever its settings, creating it with
+     * the default settings on first use.
+     *
+     * @param localRepository the folder used as the local Maven repository
+     * @return the context bound to that folder
+     */
+    public static MavenResolverContext of(File localRepository) {
+        return CONTEXTS.computeIfAbsent(localRepository.getAbsoluteFile(), folder -> new MavenResolverContext(folder, new MavenResolverSettings()));
+    }
+
+    /**
+     * Returns the shared context for the given local repository folder, creating it with the given settings
+     * on first use. The settings shape the sessions and pools of the context, so an existing context is only
+     * returned when it was created with equal settings.
+     *
+     * @param localRepository the folder used as the local Maven repository
+     * @param settings        the settings of the context
+     * @return the context bound to that folder
+     * @throws IllegalStateException if the context of that folder was already created with other settings
+     */
+    public static MavenResolverContext of(File localRepository, MavenResolverSettings settings) {
+        MavenResolverContext context = CONTEXTS.computeIfAbsent(localRepository.getAbsoluteFile(), folder -> new MavenResolverContext(folder, settings));
+        if (context.settings != settings && !context.settings.equals(settings))
+            throw new IllegalStateException(String.format("The resolver context of %s was already created with other settings: %s",
+                    context.localRepository, context.settings));
+        return context;
+    }
+
+    /**
+     * Applies the configured update and checksum policies to the given repositories.
+     * <p>
+     * With {@link MavenResolverSettings#isLatencyOrdering() latency ordering}, the default repositories
+     * are reordered among their own positions by their measured cost; every other repository keeps its place.
+     * A configured {@link MavenResolverSettings#getMirrorUrl() mirror} is searched before all of them.
+     *
+     * @param repositories the repositories to configure
+     * @return new repositories carrying the configured policies
+     */
+    public List<RemoteRepository> configureRepositories(List<RemoteRepository> repositories) {
+        List<RemoteRepository> configured = new ArrayList<>(repositories.size() + 1);
+        List<Integer> defaultSlots = new ArrayList<>();
+        String mirrorUrl = this.settings.getMirrorUrl();
+        if (mirrorUrl != null && !mirrorUrl.isEmpty())
+            configured.add(new RemoteRepository.Builder(MIRROR_ID, "default", mirrorUrl)
+                    .setPolicy(this.settings.getPolicy(MIRROR_ID, mirrorUrl))
+                    .build());
+
+        for (RemoteRepository repository : repositories) {
+            if (LibraryRepository.isDefaultRepository(repository))
+                defaultSlots.add(configured.size());
+
+            configured.add(new RemoteRepository.Builder(repository)
+                    .setPolicy(this.settings.getPolicy(repository.getId(), repository.getUrl()))
+                    .build());
+        }
+
+        if (this.settings.isLatencyOrdering() && defaultSlots.size() > 1) {
+            List<RemoteRepository> defaults = new ArrayList<>(defaultSlots.size());
+            defaultSlots.forEach(slot -> defaults.add(configured.get(slot)));
+
+            List<RemoteRepository> sorted = this.repositoryStatistics.sort(defaults);
+            for (int i = 0; i < defaultSlots.size(); i++)
+                configured.set(defaultSlots.get(i), sorted.get(i));
+        }
+        return configured;
+    }
+
+    /**
+     * Returns the sessions to try in order: the offline session first when offline-first is enabled,
+     * then the regular session.
+     *
+     * @return the sessions to try, in order
+     */
+    public List<RepositorySystemSession> getSessions() {
+        return this.offlineSession != null
+                ? Arrays.asList(this.offlineSession, this.session)
+                : Collections.singletonList(this.session);
+    }
+
+    private static RepositorySystem getSharedRepositorySystem() {
+        RepositorySystem system = sharedRepositorySystem;
+        if (system == null) {
+            synchronized (MavenResolverContext.class) {
+                system = sharedRepositorySystem;
+                if (system == null)
+                    sharedRepositorySystem = system = newRepositorySystem();
+            }
+        }
+        return system;
+    }
+
+    private static RepositorySystem newRepositorySystem() {
+        DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+        locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+        locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+        locator.addService(TransporterFactory.class, FileTransporterFactory.class);
+        Map<String, RemoteRepositoryFilterSource> filterSources = new LinkedHashMap<>();
+        filterSources.put("craftlib-routes", new RepositoryRoutes.FilterSource());
+        filterSources.put("craftlib-misses", new NegativeLookupCache.FilterSource());
+        locator.setServices(RemoteRepositoryFilterManager.class, new DefaultRemoteRepositoryFilterManager(filterSources));
+        return locator.getService(RepositorySystem.class);
+    }
+
+    private static RepositorySystemSession newSession(RepositorySystem system, File repoFolder, MavenResolverSettings settings,
+                                                      TransferListener transferListener, NegativeLookupCache negativeLookupCache, boolean offline) {
+        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        LocalRepository localRepo = new LocalRepository(repoFolder);
+        session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
+        session.setCache(new DefaultRepositoryCache());
+        session.setOffline(offline);
+        session.setTransferListener(transferListener);
+        session.setRepositoryListener(negativeLookupCache);
+
+        int threads = Math.max(1, settings.getDownloadThreads());
+        session.setConfigProperty("aether.connector.basic.threads", threads);
+        session.setConfigProperty("aether.metadataResolver.threads", threads);
+        session.setConfigProperty(RepositoryRoutes.CONFIG_PROPERTY, new RepositoryRoutes(settings.getRoutes()));
+        session.setConfigProperty(NegativeLookupCache.CONFIG_PROPERTY, negativeLookupCache);
+
+        // the default locks only guard threads of this process; file locks also guard the other servers,
+        // which may hold one for a whole download
+        if (settings.isSharedRepository()) {
+            session.setConfigProperty("aether.syncContext.named.factory", "file-lock");
+            session.setConfigProperty("aether.syncContext.named.nameMapper", "file-gav");
+            session.setConfigProperty("aether.syncContext.named.time", SHARED_LOCK_TIMEOUT_SECONDS);
+        }
+
+        // offline, a missing POM must fail the attempt instead of silently truncating the graph
+        if (offline)
+            session.setArtifactDescriptorPolicy(new SimpleArtifactDescriptorPolicy(false, false));
+
+        // the session is shared between resolver threads, so it must not be mutated after this point
+        session.setReadOnly();
+        return session;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.aether.repository.RepositoryPolicy;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunables applied to the shared {@link MavenResolverContext}.
+ * <p>
+ * Update policies follow Maven's syntax: {@code never}, {@code always}, {@code daily} or
+ * {@code interval:<minutes>}. Checksum policies are {@code fail}, {@code warn} or {@code ignore}.
+ */
+@Data
+public class MavenResolverSettings {
+
+    /**
+     * Resolves from the local repository first, and only goes to the network
+     * when the local repository cannot satisfy the whole graph.
+     */
+    private boolean offlineFirst = false;
+
+    /**
+     * Update policy used by repositories without an override.
+     */
+    private String updatePolicy = RepositoryPolicy.UPDATE_POLICY_DAILY;
+
+    /**
+     * Checksum policy used by repositories without an override.
+     */
+    private String checksumPolicy = RepositoryPolicy.CHECKSUM_POLICY_WARN;
+
+    /**
+     * Number of concurrent transfers per repository connector, and of root libraries
+     * of a single owner resolved at the same time.
+     */
+    private int downloadThreads = 5;
+
+    /**
+     * How long, in minutes, a repository that answered "not found" for an artifact is skipped
+     * for that artifact. 0 disables the negative lookup cache.
+     */
+    private long negativeCacheTtl = TimeUnit.DAYS.toMinutes(1);
+
+    /**
+     * How long, in minutes, a SNAPSHOT version resolved by the legacy download path is used
+     * before its metadata is revalidated, see {@link SnapshotMetadataResolver}.
+     */
+    private long snapshotMetadataTtl = 10;
+
+    /**
+     * Policy overrides, keyed by repository name or URL.
+     */
+    private final Map<String, RepositorySettings> repositoryPolicies = new LinkedHashMap<>();
+
+    /**
+     * Default repositories allowed to serve each groupId pattern, see {@link RepositoryRoutes}.
+     */
+    private final Map<String, List<String>> routes = new LinkedHashMap<>();
+
+    /**
+     * Orders the default repositories by their measured latency and success rate
+     * instead of their declaration order.
+     */
+    private boolean latencyOrdering = true;
+
+    /**
+     * Only collects the dependency graph, leaving the jars not yet in the local repository to be fetched
+     * by a {@link LazyArtifactResolver} when a class lookup first needs them.
+     */
+    private boolean lazyArtifacts = false;
+
+    /**
+     * URL of a {@link MavenMirrorServer} searched before every other repository, or null for none.
+     */
+    private String mirrorUrl;
+
+    /**
+     * The local repository is shared with other processes, so the resolver guards every artifact
+     * it reads or writes with a file lock those processes honour too.
+     */
+    private boolean sharedRepository = false;
+
+    /**
+     * Returns the policy to use for a repository, honouring its override if there is one.
+     *
+     * @param id  the repository id (its name)
+     * @param url the repository URL
+     * @return the repository policy
+     */
+    public RepositoryPolicy getPolicy(String id, String url) {
+        RepositorySettings override = this.repositoryPolicies.get(id);
+        if (override == null) {
+            for (Map.Entry<String, RepositorySettings> policy : this.repositoryPolicies.entrySet()) {
+                if (LibraryRepository.isSameUrl(policy.getKey(), url)) {
+                    override = policy.getValue();
+                    break;
+                }
+            }
+        }
+
+        String updatePolicy = override != null && override.getUpdatePolicy() != null ? override.getUpdatePolicy() : this.updatePolicy;
+        String checksumPolicy = override != null && override.getChecksumPolicy() != null ? override.getChecksumPolicy() : this.checksumPolicy;
+        return new RepositoryPolicy(true, updatePolicy, checksumPolicy);
+    }
+
+    public static boolean isValidUpdatePolicy(String policy) {
+        if (policy == null)
+            return false;
+        if (RepositoryPolicy.UPDATE_POLICY_NEVER.equals(policy)
+                || RepositoryPolicy.UPDATE_POLICY_ALWAYS.equals(policy)
+                || RepositoryPolicy.UPDATE_POLICY_DAILY.equals(policy))
+            return true;
+        if (!policy.startsWith(RepositoryPolicy.UPDATE_POLICY_INTERVAL + ":"))
+            return false;
+        try {
+            return Integer.parseInt(policy.substring(RepositoryPolicy.UPDATE_POLICY_INTERVAL.length() + 1)) >= 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public static boolean isValidChecksumPolicy(String policy) {
+        return RepositoryPolicy.CHECKSUM_POLICY_FAIL.equals(policy)
+                || RepositoryPolicy.CHECKSUM_POLICY_WARN.equals(policy)
+                || RepositoryPolicy.CHECKSUM_POLICY_IGNORE.equals(policy);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RepositorySettings {
+        private String updatePolicy;
+        private String checksumPolicy;
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.filter.RemoteRepositoryFilter;
+import org.eclipse.aether.spi.connector.filter.RemoteRepositoryFilterSource;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which artifacts a repository does not have, so known misses are skipped for a while.
+ * <p>
+ * Entries are keyed by repository URL and artifact coordinates ({@code groupId:artifactId:extension[:classifier]:version}),
+ * and expire after the configured time to live. Only "not found" answers are remembered; network errors and
+ * server failures are always retried. The cache is fed by the Aether sessions of a {@link MavenResolverContext},
+ * through its repository listener, and by the legacy direct download path, and it filters both.
+ */
+public class NegativeLookupCache extends AbstractRepositoryListener {
+
+    /**
+     * Session config property holding the cache used by the current session.
+     */
+    public static final String CONFIG_PROPERTY = "craftlib.negativeLookupCache";
+
+    @Getter
+    private final long ttlMillis;
+    private final Map<String, Long> misses = new ConcurrentHashMap<>();
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param ttlMillis how long a miss is remembered; 0 disables the cache
+     */
+    public NegativeLookupCache(long ttlMillis) {
+        this.ttlMillis = Math.max(0, ttlMillis);
+    }
+
+    public boolean isEnabled() {
+        return this.ttlMillis > 0;
+    }
+
+    /**
+     * Checks whether the repository is known not to have the artifact.
+     *
+     * @param repositoryUrl the repository URL
+     * @param coordinates   the artifact coordinates
+     * @return if the lookup can be skipped
+     */
+    public boolean isKnownMiss(String repositoryUrl, String coordinates) {
+        String key = key(repositoryUrl, coordinates);
+        Long expiresAt = this.misses.get(key);
+        if (expiresAt == null)
+            return this.statistics.record(false);
+        if (expiresAt > System.currentTimeMillis())
+            return this.statistics.record(true);
+
+        this.misses.remove(key, expiresAt);
+        return this.statistics.record(false);
+    }
+
+    public void recordMiss(String repositoryUrl, String coordinates) {
+        if (isEnabled())
+            this.misses.put(key(repositoryUrl, coordinates), System.currentTimeMillis() + this.ttlMillis);
+    }
+
+    public void recordHit(String repositoryUrl, String coordinates) {
+        this.misses.remove(key(repositoryUrl, coordinates));
+    }
+
+    /**
+     * Forgets the misses of every artifact whose groupId starts with the given prefix,
+     * e.g. after publishing new artifacts.
+     *
+     * @param groupIdPrefix the groupId prefix, or null to forget every miss
+     * @return the number of forgotten misses
+     */
+    public int invalidate(String groupIdPrefix) {
+        int size = this.misses.size();
+        if (groupIdPrefix == null || groupIdPrefix.isEmpty())
+            this.misses.clear();
+        else
+            this.misses.keySet().removeIf(key -> key.substring(key.indexOf(' ') + 1).startsWith(groupIdPrefix));
+        return size - this.misses.size();
+    }
+
+    public int size() {
+        return this.misses.size();
+    }
+
+    @Override
+    public void artifactDownloaded(RepositoryEvent event) {
+        if (!(event.getRepository() instanceof RemoteRepository))
+            return;
+
+        String url = ((RemoteRepository) event.getRepository()).getUrl();
+        if (event.getException() == null)
+            recordHit(url, event.getArtifact().toString());
+        else if (event.getException() instanceof ArtifactNotFoundException)
+            recordMiss(url, event.getArtifact().toString());
+    }
+
+    /**
+     * Loads previously saved misses, dropping the expired ones. Missing or unreadable files are ignored.
+     *
+     * @param file the cache file
+     */
+    public void load(File file) {
+        if (!file.isFile())
+            return;
+
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException ignored) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                long expiresAt = Long.parseLong(properties.getProperty(key));
+                if (expiresAt > now)
+                    this.misses.put(key, expiresAt);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Saves the current misses, replacing the previous file atomically.
+     *
+     * @param file the cache file
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        long now = System.currentTimeMillis();
+        this.misses.forEach((key, expiresAt) -> {
+            if (expiresAt > now)
+                properties.setProperty(key, String.valueOf(expiresAt));
+        });
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        temp.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            properties.store(writer, "CraftLib repository misses: <repository> <coordinates>=<expires at>");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String key(String repositoryUrl, String coordinates) {
+        return (repositoryUrl.endsWith("/") ? repositoryUrl : repositoryUrl + "/") + " " + coordinates;
+    }
+
+    /**
+     * Exposes the cache stored in a session to Aether's repository filter manager.
+     */
+    public static class FilterSource implements RemoteRepositoryFilterSource {
+
+        @Override
+        public RemoteRepositoryFilter getRemoteRepositoryFilter(RepositorySystemSession session) {
+            Object cache = session.getConfigProperties().get(CONFIG_PROPERTY);
+            return cache instanceof NegativeLookupCache && ((NegativeLookupCache) cache).isEnabled()
+                    ? new Filter((NegativeLookupCache) cache)
+                    : null;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Filter implements RemoteRepositoryFilter {
+
+        private final NegativeLookupCache cache;
+
+        @Override
+        public Result acceptArtifact(RemoteRepository repository, Artifact artifact) {
+            return this.cache.isKnownMiss(repository.getUrl(), artifact.toString())
+                    ? new FilterResult(false, "known miss")
+                    : FilterResult.ACCEPTED;
+        }
+
+        @Override
+        public Result acceptMetadata(RemoteRepository repository, Metadata metadata) {
+            return FilterResult.ACCEPTED;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class FilterResult implements RemoteRepositoryFilter.Result {
+
+        private static final FilterResult ACCEPTED = new FilterResult(true, "not a known miss");
+
+        private final boolean accepted;
+        private final String reasoning;
+
+        @Override
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        @Override
+        public String reasoning() {
+            return reasoning;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.filter.RemoteRepositoryFilter;
+import org.eclipse.aether.spi.connector.filter.RemoteRepositoryFilterSource;
+
+import java.util.*;
+
+/**
+ * Routes groupIds to the default repositories that actually host them.
+ * <p>
+ * A route maps a groupId pattern to the names (or URLs) of the repositories allowed to serve it.
+ * {@code org.spigotmc} matches that exact groupId, while {@code org.spigotmc.*} also matches every
+ * groupId below it; the most specific pattern wins. A routed artifact is never looked up in any
+ * other {@link LibraryRepository#ALL default repository}, which avoids a chain of misses before
+ * reaching the right one. Repositories declared by the plugins themselves are never filtered.
+ */
+public class RepositoryRoutes implements RemoteRepositoryFilter {
+
+    /**
+     * Session config property holding the routes used by the current session.
+     */
+    public static final String CONFIG_PROPERTY = "craftlib.repositoryRoutes";
+
+    private final Map<String, Set<String>> exactRoutes = new HashMap<>();
+    private final Map<String, Set<String>> prefixRoutes = new HashMap<>();
+
+    public RepositoryRoutes(Map<String, ? extends Collection<String>> routes) {
+        routes.forEach((pattern, repositories) -> {
+            Set<String> targets = new HashSet<>(repositories);
+            if (pattern.endsWith(".*"))
+                this.prefixRoutes.put(pattern.substring(0, pattern.length() - 2), targets);
+            else
+                this.exactRoutes.put(pattern, targets);
+        });
+    }
+
+    public boolean isEmpty() {
+        return this.exactRoutes.isEmpty() && this.prefixRoutes.isEmpty();
+    }
+
+    /**
+     * Returns the repositories allowed to serve the given groupId.
+     *
+     * @param groupId the groupId to route
+     * @return the allowed repository names or URLs, or null if the groupId is not routed
+     */
+    public Set<String> route(String groupId) {
+        Set<String> targets = this.exactRoutes.get(groupId);
+        if (targets != null)
+            return targets;
+
+        for (String prefix = groupId; ; prefix = prefix.substring(0, prefix.lastIndexOf('.'))) {
+            targets = this.prefixRoutes.get(prefix);
+            if (targets != null)
+                return targets;
+            if (prefix.lastIndexOf('.') < 0)
+                return null;
+        }
+    }
+
+    @Override
+    public Result acceptArtifact(RemoteRepository repository, Artifact artifact) {
+        return accept(repository, artifact.getGroupId());
+    }
+
+    @Override
+    public Result acceptMetadata(RemoteRepository repository, Metadata metadata) {
+        return accept(repository, metadata.getGroupId());
+    }
+
+    private Result accept(RemoteRepository repository, String groupId) {
+        if (groupId == null || groupId.isEmpty() || !LibraryRepository.isDefaultRepository(repository))
+            return RouteResult.ACCEPTED;
+
+        Set<String> targets = route(groupId);
+        if (targets == null || targets.contains(repository.getId()) || targets.contains(repository.getUrl()))
+            return RouteResult.ACCEPTED;
+
+        return new RouteResult(false, String.format("%s is routed to %s", groupId, targets));
+    }
+
+    /**
+     * Exposes the routes stored in a session to Aether's repository filter manager.
+     */
+    public static class FilterSource implements RemoteRepositoryFilterSource {
+
+        @Override
+        public RemoteRepositoryFilter getRemoteRepositoryFilter(RepositorySystemSession session) {
+            Object routes = session.getConfigProperties().get(CONFIG_PROPERTY);
+            return routes instanceof RepositoryRoutes && !((RepositoryRoutes) routes).isEmpty()
+                    ? (RepositoryRoutes) routes
+                    : null;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class RouteResult implements Result {
+
+        private static final RouteResult ACCEPTED = new RouteResult(true, "not routed");
+
+        private final boolean accepted;
+        private final String reasoning;
+
+        @Override
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        @Override
+        public String reasoning() {
+            return reasoning;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the latency and success rate of every remote repository, and persists them across starts.
+ * <p>
+ * The latency is the time between a transfer being initiated and the repository answering it
+ * (first byte or failure), smoothed with an exponential moving average. Repositories are then ranked
+ * by their expected cost to answer a lookup, which is their latency divided by their success rate.
+ */
+public class RepositoryStatistics extends AbstractTransferListener {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double DEFAULT_LATENCY_MILLIS = 500;
+
+    private final Map<String, Score> scores = new ConcurrentHashMap<>();
+    private final Map<TransferResource, Long> initiated = new ConcurrentHashMap<>();
+
+    @Override
+    public void transferInitiated(TransferEvent event) {
+        this.initiated.put(event.getResource(), System.nanoTime());
+    }
+
+    @Override
+    public void transferStarted(TransferEvent event) {
+        Long start = this.initiated.remove(event.getResource());
+        if (start != null)
+            score(event.getResource().getRepositoryUrl()).record(true, (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        Long start = this.initiated.remove(event.getResource());
+        if (start != null)
+            score(event.getResource().getRepositoryUrl()).record(false, (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        this.initiated.remove(event.getResource());
+    }
+
+    /**
+     * Returns the expected cost of a lookup in the given repository; lower is better.
+     * Repositories without measurements get a neutral score.
+     *
+     * @param url the repository URL
+     * @return the repository cost
+     */
+    public double getCost(String url) {
+        Score score = this.scores.get(url);
+        return score != null ? score.getCost() : new Score().getCost();
+    }
+
+    /**
+     * Sorts the given repositories by their expected cost, keeping the original order between ties.
+     *
+     * @param repositories the repositories to sort
+     * @return a new sorted list
+     */
+    public List<RemoteRepository> sort(Collection<RemoteRepository> repositories) {
+        List<RemoteRepository> sorted = new ArrayList<>(repositories);
+        sorted.sort(Comparator.comparingDouble(repository -> getCost(repository.getUrl())));
+        return sorted;
+    }
+
+    /**
+     * Loads previously saved measurements. Missing or unreadable files are ignored.
+     *
+     * @param file the statistics file
+     */
+    public void load(File file) {
+        if (!file.isFile())
+            return;
+
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException ignored) {
+            return;
+        }
+
+        for (String url : properties.stringPropertyNames()) {
+            String[] values = properties.getProperty(url).split(",");
+            if (values.length != 3)
+                continue;
+            try {
+                Score score = new Score();
+                score.successes = Long.parseLong(values[0]);
+                score.failures = Long.parseLong(values[1]);
+                score.latencyMillis = Double.parseDouble(values[2]);
+                this.scores.put(url, score);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Saves the current measurements, replacing the previous file atomically.
+     *
+     * @param file the statistics file
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        this.scores.forEach((url, score) -> properties.setProperty(url, score.toString()));
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        temp.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            properties.store(writer, "CraftLib repository statistics: successes,failures,latency-ms");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Score score(String url) {
+        return this.scores.computeIfAbsent(url, key -> new Score());
+    }
+
+    private static class Score {
+        private long successes;
+        private long failures;
+        private double latencyMillis = DEFAULT_LATENCY_MILLIS;
+
+        private synchronized void record(boolean success, double latencyMillis) {
+            if (success)
+                this.successes++;
+            else
+                this.failures++;
+            this.latencyMillis += SMOOTHING * (latencyMillis - this.latencyMillis);
+        }
+
+        private synchronized double getCost() {
+            // Laplace smoothing keeps unknown repositories at a neutral 50% success rate
+            double successRate = (this.successes + 1.0) / (this.successes + this.failures + 2.0);
+            return this.latencyMillis / successRate;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return this.successes + "," + this.failures + "," + String.format(Locale.ROOT, "%.1f", this.latencyMillis);
+        }
+    }
+}
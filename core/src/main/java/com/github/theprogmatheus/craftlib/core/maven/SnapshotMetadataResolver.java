@@ -2,18 +2,43 @@ package com.github.theprogmatheus.craftlib.core.maven;
 
 import com.github.theprogmatheus.craftlib.core.LibraryDependency;
 import com.github.theprogmatheus.craftlib.core.LibraryRepository;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import com.github.theprogmatheus.craftlib.core.utils.FileUtils;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Resolves the timestamped version of SNAPSHOT dependencies from the repository's {@code maven-metadata.xml}.
+ * <p>
+ * Resolved versions are kept in memory, and on disk once a {@link #setCacheFolder(File) cache folder} is set,
+ * for the configured time to live. Once expired, the metadata is revalidated with a conditional GET
+ * ({@code If-None-Match} / {@code If-Modified-Since}), so unchanged metadata is neither downloaded nor parsed again.
+ * The metadata itself is streamed, and parsing stops at the first matching {@code snapshotVersion}.
+ */
 public class SnapshotMetadataResolver {
 
+    private static final String METADATA_FILE_NAME = "maven-metadata.xml";
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+    private static final Map<String, CachedVersion> CACHE = new ConcurrentHashMap<>();
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private static volatile File cacheFolder;
+    private static volatile long ttlMillis = TimeUnit.MINUTES.toMillis(10);
+
     /**
      * Tries to resolve the actual snapshot version (with timestamp and build number)
      * by downloading and parsing the `maven-metadata.xml` file from the repository.
@@ -23,42 +48,239 @@ public class SnapshotMetadataResolver {
      * @return The resolved version (e.g. "1.0.0-20250715.154406-1"), or null if failed
      */
     public static String resolveSnapshotVersion(LibraryDependency dependency, LibraryRepository repository) {
-        try {
-            String metadataPath = dependency.getRelativePath() + "maven-metadata.xml";
-            URL metadataUrl = repository.getUri().resolve(metadataPath).toURL();
+        String metadataPath = dependency.getRelativePath() + METADATA_FILE_NAME;
+        String metadataUrl = repository.getUri().resolve(metadataPath).toString();
+
+        CachedVersion cached = CACHE.get(metadataUrl);
+        if (cached != null && !cached.isExpired())
+            return cached.version;
+
+        // one refresh per metadata file, even when its .jar, .pom and sources URIs are built concurrently
+        synchronized (LOCKS.computeIfAbsent(metadataUrl, url -> new Object())) {
+            cached = CACHE.get(metadataUrl);
+            if (cached != null && !cached.isExpired())
+                return cached.version;
+
+            File cacheFile = getCacheFile(dependency, metadataUrl);
+            if (cached == null && cacheFile != null)
+                cached = CachedVersion.load(cacheFile);
+            if (cached != null && !cached.isExpired()) {
+                CACHE.put(metadataUrl, cached);
+                return cached.version;
+            }
+
+            CachedVersion refreshed = fetch(metadataUrl, cached);
+            if (refreshed == null) {
+                // the previous version and its validators are kept, to be revalidated on the next call
+                if (cached != null)
+                    CACHE.put(metadataUrl, cached);
+                return cached != null ? cached.version : null;
+            }
+
+            CACHE.put(metadataUrl, refreshed);
+            if (cacheFile != null && refreshed.version != null)
+                refreshed.save(cacheFile);
+            return refreshed.version;
+        }
+    }
+
+    /**
+     * Sets the folder where resolved versions are kept across restarts, usually the local repository.
+     * Until a folder is set, versions are only cached in memory.
+     *
+     * @param folder the cache folder, or null to only cache in memory
+     */
+    public static void setCacheFolder(File folder) {
+        cacheFolder = folder;
+    }
 
-            HttpURLConnection connection = (HttpURLConnection) metadataUrl.openConnection();
+    /**
+     * Sets how long a resolved version is used before its metadata is revalidated.
+     *
+     * @param ttl the time to live in milliseconds; 0 revalidates on every call
+     */
+    public static void setTtlMillis(long ttl) {
+        ttlMillis = Math.max(0, ttl);
+    }
+
+    /**
+     * Fetches the metadata, revalidating the previous result when there is one.
+     *
+     * @return the new cache entry, or null if the repository could not be reached or answered with an error
+     */
+    private static CachedVersion fetch(String metadataUrl, CachedVersion previous) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(metadataUrl).openConnection();
             connection.setRequestProperty("User-Agent", "CraftLib Resolver");
+            if (previous != null && previous.etag != null)
+                connection.setRequestProperty("If-None-Match", previous.etag);
+            if (previous != null && previous.lastModified > 0)
+                connection.setIfModifiedSince(previous.lastModified);
             connection.connect();
 
             int code = connection.getResponseCode();
-            if (code >= 400 && code < 600)
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null)
+                return new CachedVersion(previous.version, previous.etag, previous.lastModified, System.currentTimeMillis());
+
+            // a missing metadata file is remembered too, so every URI built for it doesn't ask again
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE)
+                return new CachedVersion(null, null, 0, System.currentTimeMillis());
+            // any other failure, e.g. a rate limit or an outage, says nothing about the metadata
+            if (code != HttpURLConnection.HTTP_OK)
                 return null;
 
             try (InputStream stream = connection.getInputStream()) {
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.parse(stream);
-
-                NodeList snapshotVersions = doc.getElementsByTagName("snapshotVersion");
-                for (int i = 0; i < snapshotVersions.getLength(); i++) {
-                    Element versionElem = (Element) snapshotVersions.item(i);
-                    String extension = getChildText(versionElem, "extension");
-                    String classifier = getChildText(versionElem, "classifier");
-
-                    if ("jar".equals(extension) && (classifier == null || classifier.isEmpty())) {
-                        return getChildText(versionElem, "value");
-                    }
-                }
+                return new CachedVersion(parseSnapshotVersion(stream), connection.getHeaderField("ETag"),
+                        connection.getLastModified(), System.currentTimeMillis());
             }
-
         } catch (Exception ignored) {
         }
         return null;
     }
 
-    private static String getChildText(Element parent, String tag) {
-        NodeList nodes = parent.getElementsByTagName(tag);
-        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null;
+    /**
+     * Streams the metadata until the first {@code snapshotVersion} of the main jar.
+     */
+    private static String parseSnapshotVersion(InputStream stream) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
+        try {
+            boolean inSnapshotVersion = false;
+            String element = null;
+            String extension = null;
+            String classifier = null;
+            String value = null;
+
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        element = reader.getLocalName();
+                        if ("snapshotVersion".equals(element)) {
+                            inSnapshotVersion = true;
+                            extension = classifier = value = null;
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                        if (!inSnapshotVersion || element == null)
+                            break;
+                        if ("extension".equals(element))
+                            extension = append(extension, reader.getText());
+                        else if ("classifier".equals(element))
+                            classifier = append(classifier, reader.getText());
+                        else if ("value".equals(element))
+                            value = append(value, reader.getText());
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        element = null;
+                        if ("snapshotVersion".equals(reader.getLocalName())) {
+                            inSnapshotVersion = false;
+                            if ("jar".equals(trim(extension)) && trim(classifier) == null)
+                                return trim(value);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String append(String current, String text) {
+        return current == null ? text : current + text;
+    }
+
+    private static String trim(String text) {
+        if (text == null)
+            return null;
+        text = text.trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static File getCacheFile(LibraryDependency dependency, String metadataUrl) {
+        File folder = cacheFolder;
+        if (folder == null)
+            return null;
+
+        File versionFolder = new File(folder, dependency.getRelativePath().replace('/', File.separatorChar));
+        return new File(versionFolder, "craftlib-metadata-" + hash(metadataUrl) + ".properties");
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return FileUtils.toHexString(digest).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static class CachedVersion {
+        private final String version;
+        private final String etag;
+        private final long lastModified;
+        private final long fetchedAt;
+
+        private CachedVersion(String version, String etag, long lastModified, long fetchedAt) {
+            this.version = version;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - this.fetchedAt >= ttlMillis;
+        }
+
+        private static CachedVersion load(File file) {
+            if (!file.isFile())
+                return null;
+
+            Properties properties = new Properties();
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+                String version = properties.getProperty("version");
+                if (version == null)
+                    return null;
+                return new CachedVersion(version, properties.getProperty("etag"),
+                        Long.parseLong(properties.getProperty("lastModified", "0")),
+                        Long.parseLong(properties.getProperty("fetchedAt", "0")));
+            } catch (IOException | NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private void save(File file) {
+            Properties properties = new Properties();
+            properties.setProperty("version", this.version);
+            if (this.etag != null)
+                properties.setProperty("etag", this.etag);
+            properties.setProperty("lastModified", String.valueOf(this.lastModified));
+            properties.setProperty("fetchedAt", String.valueOf(this.fetchedAt));
+
+            File temp = null;
+            try {
+                file.getParentFile().mkdirs();
+                // a unique temp file, since other processes may share the local repository
+                temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+                    properties.store(writer, null);
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ignored) {
+                // the disk cache is only an optimization, the version stays cached in memory
+                if (temp != null)
+                    temp.delete();
+            }
+        }
     }
-}
\ No newline at end of file
+}
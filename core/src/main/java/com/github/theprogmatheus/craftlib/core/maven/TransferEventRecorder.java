@@ -0,0 +1,85 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.aether.RequestTrace;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Emits a {@link LibraryEvent.Type#TRANSFER} Flight Recorder event for every download, from its initiation
+ * to its end, so the time spent waiting for the repository is part of the event.
+ * <p>
+ * The plugin a transfer is made for is taken from the request trace: the resolvers start their requests
+ * with a {@link #trace(String) trace} naming the plugin, which the resolver passes down to every transfer.
+ */
+public class TransferEventRecorder extends AbstractTransferListener {
+
+    private final Map<TransferResource, LibraryEvent> events = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the root trace of the requests made for a plugin.
+     *
+     * @param owner the plugin the requests are made for
+     * @return the trace to set on the collect, dependency or artifact request
+     */
+    public static RequestTrace trace(String owner) {
+        return new RequestTrace(new Owner(owner));
+    }
+
+    @Override
+    public void transferInitiated(TransferEvent event) {
+        if (event.getRequestType() != TransferEvent.RequestType.GET)
+            return;
+
+        LibraryEvent libraryEvent = LibraryEvent.begin(LibraryEvent.Type.TRANSFER);
+        if (!libraryEvent.isEnabled())
+            return;
+
+        TransferResource resource = event.getResource();
+        libraryEvent.set("plugin", getOwner(resource.getTrace()))
+                .set("repository", resource.getRepositoryUrl())
+                .set("resource", resource.getResourceName());
+        this.events.put(resource, libraryEvent);
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        end(event, true);
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        end(event, false);
+    }
+
+    private void end(TransferEvent event, boolean succeeded) {
+        LibraryEvent libraryEvent = this.events.remove(event.getResource());
+        if (libraryEvent == null)
+            return;
+
+        libraryEvent.set("bytes", event.getTransferredBytes()).set("succeeded", succeeded).close();
+    }
+
+    private static String getOwner(RequestTrace trace) {
+        for (RequestTrace current = trace; current != null; current = current.getParent()) {
+            if (current.getData() instanceof Owner)
+                return ((Owner) current.getData()).name;
+        }
+        return null;
+    }
+
+    @RequiredArgsConstructor
+    private static class Owner {
+        private final String name;
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the downloads performed by a session, to report how much was transferred and how fast.
+ * <p>
+ * The throughput is measured against the wall-clock window between the first transfer start and
+ * the last transfer end, so concurrent downloads are reflected in the reported rate.
+ * Bytes and time are also kept per repository, the time being the sum of the transfer durations.
+ */
+public class TransferStatistics extends AbstractTransferListener {
+
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastEnd = new AtomicLong();
+    private final Map<String, AtomicLong> repositoryBytes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> repositoryMillis = new ConcurrentHashMap<>();
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        if (event.getRequestType() != TransferEvent.RequestType.GET)
+            return;
+
+        TransferResource resource = event.getResource();
+        downloads.incrementAndGet();
+        bytes.addAndGet(event.getTransferredBytes());
+        long end = System.currentTimeMillis();
+        firstStart.accumulateAndGet(resource.getTransferStartTime(), Math::min);
+        lastEnd.accumulateAndGet(end, Math::max);
+
+        String repository = resource.getRepositoryUrl();
+        repositoryBytes.computeIfAbsent(repository, key -> new AtomicLong()).addAndGet(event.getTransferredBytes());
+        repositoryMillis.computeIfAbsent(repository, key -> new AtomicLong()).addAndGet(Math.max(0, end - resource.getTransferStartTime()));
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        if (event.getRequestType() == TransferEvent.RequestType.GET)
+            failures.incrementAndGet();
+    }
+
+    public long getDownloads() {
+        return downloads.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the bytes downloaded from each repository, keyed by repository URL
+     */
+    public Map<String, Long> getRepositoryBytes() {
+        return snapshot(repositoryBytes);
+    }
+
+    /**
+     * @return the summed duration of the downloads from each repository, in milliseconds
+     */
+    public Map<String, Long> getRepositoryMillis() {
+        return snapshot(repositoryMillis);
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> values) {
+        Map<String, Long> snapshot = new TreeMap<>();
+        values.forEach((key, value) -> snapshot.put(key, value.get()));
+        return snapshot;
+    }
+
+    /**
+     * @return the wall-clock time spent downloading, in milliseconds
+     */
+    public long getElapsedMillis() {
+        long start = firstStart.get();
+        long end = lastEnd.get();
+        return start == Long.MAX_VALUE ? 0 : Math.max(1, end - start);
+    }
+
+    /**
+     * @return the aggregate throughput, in bytes per second
+     */
+    public long getBytesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getBytes() * 1000 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s downloads, %.2f MB in %s ms (%.2f MB/s), %s failed lookups",
+                getDownloads(), getBytes() / 1048576.0, getElapsedMillis(), getBytesPerSecond() / 1048576.0, getFailures());
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryEvent;
+import com.github.theprogmatheus.craftlib.core.metrics.LibraryMetrics;
+import lombok.Getter;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.RequestTrace;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.CollectStepData;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.graph.manager.DependencyManagerUtils;
+import org.eclipse.aether.version.VersionConstraint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the libraries of several owners (usually plugins) through a single dependency graph.
+ * <p>
+ * Every declared coordinate is collected in one pass, so shared transitive subtrees are only visited
+ * once per call, and every artifact in the graph is downloaded at most once. Each owner then gets its
+ * own file set, mediated with Maven's nearest-wins rule over the subgraph reachable from its own
+ * coordinates, so one owner's versions never leak into another's.
+ */
+@Getter
+public class UnifiedDependencyResolver {
+
+    private final MavenResolverContext context;
+    private final RepositorySystem repoSystem;
+    private final List<RepositorySystemSession> sessions;
+
+    public UnifiedDependencyResolver(MavenResolverContext context) {
+        this.context = context;
+        this.repoSystem = context.getRepositorySystem();
+        this.sessions = context.getSessions().stream()
+                .map(UnifiedDependencyResolver::newUnmediatedSession)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolves the coordinates declared by each owner.
+     * <p>
+     * With an offline-first context, the graph is first resolved from the local repository only,
+     * and only the owners that could not be satisfied locally are resolved again online. An owner
+     * whose local subgraph was cut short by a missing POM or an unresolvable version range counts
+     * as not satisfied, rather than resolving to a truncated file set.
+     *
+     * @param coordinatesByOwner the "groupId:artifactId:version" coordinates declared by each owner
+     * @param repositories       the repositories to search, in order
+     * @return the resolved files per owner, and the failure of every owner that could not be resolved
+     */
+    public Result resolve(Map<String, ? extends Collection<String>> coordinatesByOwner, List<RemoteRepository> repositories) {
+        List<RemoteRepository> configuredRepositories = this.context.configureRepositories(repositories);
+
+        Result result = resolve(this.sessions.get(0), coordinatesByOwner, configuredRepositories);
+        for (int i = 1; i < this.sessions.size() && !result.failures.isEmpty(); i++) {
+            Map<String, Collection<String>> remaining = new LinkedHashMap<>();
+            result.failures.keySet().forEach(owner -> remaining.put(owner, coordinatesByOwner.get(owner)));
+
+            Result retry = resolve(this.sessions.get(i), remaining, configuredRepositories);
+            result.failures.keySet().removeAll(retry.files.keySet());
+            result.failures.putAll(retry.failures);
+            result.files.putAll(retry.files);
+            result.artifactCount += retry.artifactCount;
+        }
+        return result;
+    }
+
+    private Result resolve(RepositorySystemSession session, Map<String, ? extends Collection<String>> coordinatesByOwner, List<RemoteRepository> repositories) {
+        Result result = new Result();
+
+        // every distinct coordinate becomes one root of the shared graph
+        Map<String, Dependency> roots = new LinkedHashMap<>();
+        coordinatesByOwner.forEach((owner, coordinates) -> coordinates.forEach(coords -> {
+            if (roots.containsKey(coords))
+                return;
+            try {
+                roots.put(coords, new Dependency(new DefaultArtifact(coords), JavaScopes.RUNTIME));
+            } catch (IllegalArgumentException e) {
+                result.failures.putIfAbsent(owner, new IOException("Invalid dependency coordinates: " + coords, e));
+            }
+        }));
+
+        CollectResult collectResult;
+        try (LibraryMetrics.Timing ignored = this.context.getMetrics().time(LibraryMetrics.GLOBAL, LibraryMetrics.Phase.COLLECT);
+             LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.COLLECT)) {
+            event.set("plugin", LibraryMetrics.GLOBAL).set("coordinates", String.join(", ", roots.keySet()));
+            CollectRequest collectRequest = new CollectRequest(new ArrayList<>(roots.values()), null, repositories);
+            collectRequest.setTrace(TransferEventRecorder.trace(LibraryMetrics.GLOBAL));
+            collectResult = repoSystem.collectDependencies(session, collectRequest);
+        } catch (DependencyCollectionException e) {
+            collectResult = e.getResult();
+        }
+
+        // the graph is cut below a failed descriptor, and a failed version range leaves no node at all, so each
+        // failure is also attached to the artifact it was reached from: every owner whose subgraph holds either fails
+        Map<String, Exception> collectFailures = new HashMap<>();
+        Exception unattributedFailure = null;
+        for (Exception exception : collectResult.getExceptions()) {
+            List<String> failedArtifacts = getFailedArtifacts(exception);
+            if (failedArtifacts == null)
+                unattributedFailure = exception;
+            else
+                failedArtifacts.forEach(artifact -> collectFailures.putIfAbsent(artifact, exception));
+        }
+
+        List<DependencyNode> rootNodes = collectResult.getRoot() != null
+                ? collectResult.getRoot().getChildren()
+                : Collections.<DependencyNode>emptyList();
+
+        // mediate each owner's subgraph and gather the union of the winning artifacts
+        Map<String, List<DependencyNode>> nodesByOwner = new LinkedHashMap<>();
+        Map<String, ArtifactRequest> requests = new LinkedHashMap<>();
+        for (Map.Entry<String, ? extends Collection<String>> entry : coordinatesByOwner.entrySet()) {
+            String owner = entry.getKey();
+            if (result.failures.containsKey(owner))
+                continue;
+            if (unattributedFailure != null) {
+                result.failures.put(owner, unattributedFailure);
+                continue;
+            }
+
+            List<DependencyNode> ownerRoots = new ArrayList<>();
+            for (String coords : entry.getValue()) {
+                Dependency root = roots.get(coords);
+                DependencyNode rootNode = root != null ? findRootNode(rootNodes, root) : null;
+                if (rootNode == null) {
+                    Exception cause = root != null ? collectFailures.get(root.getArtifact().toString()) : null;
+                    result.failures.put(owner, new IOException("No artifacts found for: " + coords, cause));
+                    break;
+                }
+                ownerRoots.add(rootNode);
+            }
+            if (result.failures.containsKey(owner))
+                continue;
+
+            List<DependencyNode> nodes = mediate(ownerRoots);
+            for (DependencyNode node : nodes) {
+                Exception failure = collectFailures.get(node.getArtifact().toString());
+                if (failure != null) {
+                    result.failures.put(owner, failure);
+                    break;
+                }
+            }
+            if (result.failures.containsKey(owner))
+                continue;
+
+            // a download shared by several plugins is traced to the first one needing it
+            nodes.forEach(node -> requests.putIfAbsent(node.getArtifact().toString(),
+                    new ArtifactRequest(node).setTrace(TransferEventRecorder.trace(owner))));
+            nodesByOwner.put(owner, nodes);
+        }
+
+        Map<String, ArtifactResult> artifactResults = new HashMap<>();
+        List<ArtifactResult> results;
+        try (LibraryMetrics.Timing ignored = this.context.getMetrics().time(LibraryMetrics.GLOBAL, LibraryMetrics.Phase.DOWNLOAD);
+             LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.RESOLVE)) {
+            event.set("plugin", LibraryMetrics.GLOBAL).set("artifacts", requests.size());
+            results = repoSystem.resolveArtifacts(session, requests.values());
+        } catch (ArtifactResolutionException e) {
+            results = e.getResults();
+        }
+        for (ArtifactResult artifactResult : results)
+            artifactResults.put(artifactResult.getRequest().getArtifact().toString(), artifactResult);
+
+        nodesByOwner.forEach((owner, nodes) -> {
+            List<File> files = new ArrayList<>(nodes.size());
+            for (DependencyNode node : nodes) {
+                ArtifactResult artifactResult = artifactResults.get(node.getArtifact().toString());
+                if (artifactResult == null || !artifactResult.isResolved()) {
+                    Exception cause = artifactResult == null || artifactResult.getExceptions().isEmpty()
+                            ? null
+                            : artifactResult.getExceptions().get(0);
+                    result.failures.put(owner, new IOException("Failed to resolve artifact: " + node.getArtifact(), cause));
+                    return;
+                }
+                files.add(artifactResult.getArtifact().getFile());
+            }
+            result.files.put(owner, files);
+        });
+
+        result.artifactCount = requests.size();
+        return result;
+    }
+
+    /**
+     * Finds the node collected for a root dependency by its coordinates, since a root whose descriptor
+     * could not be read is left out of the graph and the remaining nodes shift.
+     * A version range is matched by the constraint it was resolved from.
+     */
+    private static DependencyNode findRootNode(List<DependencyNode> rootNodes, Dependency root) {
+        Artifact declared = root.getArtifact();
+        for (DependencyNode node : rootNodes) {
+            Artifact artifact = node.getArtifact();
+            if (artifact == null
+                    || !artifact.getGroupId().equals(declared.getGroupId())
+                    || !artifact.getArtifactId().equals(declared.getArtifactId())
+                    || !artifact.getExtension().equals(declared.getExtension())
+                    || !artifact.getClassifier().equals(declared.getClassifier()))
+                continue;
+
+            String premanagedVersion = DependencyManagerUtils.getPremanagedVersion(node);
+            if (declared.getVersion().equals(premanagedVersion != null ? premanagedVersion : artifact.getVersion()))
+                return node;
+
+            VersionConstraint constraint = node.getVersionConstraint();
+            if (constraint != null && constraint.getRange() != null && declared.getVersion().equals(constraint.toString()))
+                return node;
+        }
+        return null;
+    }
+
+    /**
+     * @return the failed artifact and the artifact it was reached from, if any,
+     * or null if the exception does not tell where in the graph it happened
+     */
+    private static List<String> getFailedArtifacts(Exception exception) {
+        // the breadth-first collector reports the failures of its worker threads wrapped
+        Throwable failure = exception instanceof ExecutionException && exception.getCause() != null ? exception.getCause() : exception;
+
+        RequestTrace trace;
+        Artifact artifact;
+        if (failure instanceof ArtifactDescriptorException) {
+            ArtifactDescriptorRequest request = ((ArtifactDescriptorException) failure).getResult().getRequest();
+            trace = request.getTrace();
+            artifact = request.getArtifact();
+        } else if (failure instanceof VersionRangeResolutionException) {
+            VersionRangeRequest request = ((VersionRangeResolutionException) failure).getResult().getRequest();
+            trace = request.getTrace();
+            artifact = request.getArtifact();
+        } else {
+            return null;
+        }
+
+        List<String> artifacts = new ArrayList<>(2);
+        artifacts.add(artifact.toString());
+        for (; trace != null; trace = trace.getParent()) {
+            if (trace.getData() instanceof CollectStepData) {
+                List<DependencyNode> path = ((CollectStepData) trace.getData()).getPath();
+                DependencyNode parent = path.isEmpty() ? null : path.get(path.size() - 1);
+                if (parent != null && parent.getArtifact() != null)
+                    artifacts.add(parent.getArtifact().toString());
+                break;
+            }
+        }
+        return artifacts;
+    }
+
+    /**
+     * Picks the nodes reachable from the given roots, keeping only the nearest version of every artifact.
+     */
+    private static List<DependencyNode> mediate(List<DependencyNode> roots) {
+        Map<String, DependencyNode> winners = new LinkedHashMap<>();
+        Deque<DependencyNode> queue = new ArrayDeque<>(roots);
+
+        while (!queue.isEmpty()) {
+            DependencyNode node = queue.poll();
+            Artifact artifact = node.getArtifact();
+            String key = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getExtension() + ":" + artifact.getClassifier();
+
+            if (winners.containsKey(key))
+                continue;
+
+            winners.put(key, node);
+            queue.addAll(node.getChildren());
+        }
+        return new ArrayList<>(winners.values());
+    }
+
+    private static RepositorySystemSession newUnmediatedSession(RepositorySystemSession shared) {
+        DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(shared);
+
+        // conflicts are mediated per owner, so the collected graph must keep every version
+        session.setDependencyGraphTransformer(null);
+        // the breadth-first collector records the path of every failed request, and its skipper must not
+        // prune the subtrees that lose the global mediation, as they may still win for their own owner
+        session.setConfigProperty("aether.dependencyCollector.impl", "bf");
+        session.setConfigProperty("aether.dependencyCollector.bf.skipper", false);
+        session.setReadOnly();
+        return session;
+    }
+
+    @Getter
+    public static class Result {
+        private final Map<String, List<File>> files = new LinkedHashMap<>();
+        private final Map<String, Exception> failures = new LinkedHashMap<>();
+        private int artifactCount;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.theprogmatheus.craftlib.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the hits and misses of a cache.
+ */
+public class CacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public void hit() {
+        this.hits.incrementAndGet();
+    }
+
+    public void miss() {
+        this.misses.incrementAndGet();
+    }
+
+    /**
+     * Counts a lookup as a hit or a miss.
+     *
+     * @param hit whether the lookup hit
+     * @return the given hit, for chaining
+     */
+    public boolean record(boolean hit) {
+        if (hit)
+            hit();
+        else
+            miss();
+        return hit;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getLookups() {
+        return getHits() + getMisses();
+    }
+
+    /**
+     * @return the fraction of lookups that hit, from 0 to 1, or 0 without lookups
+     */
+    public double getHitRate() {
+        long lookups = getLookups();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.0f%% (%s/%s)", getHitRate() * 100, getHits(), getLookups());
+    }
+}
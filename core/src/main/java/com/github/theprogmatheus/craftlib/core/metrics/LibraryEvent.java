@@ -0,0 +1,257 @@
+package com.github.theprogmatheus.craftlib.core.metrics;
+
+import lombok.Getter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * A Java Flight Recorder event of the library loading pipeline, so a recording shows on a timeline which
+ * plugin descriptor, dependency, transfer, shading step or injection took long and how the work overlapped.
+ * <p>
+ * CraftLib is built for Java 8, so the event types are defined at runtime through {@code jdk.jfr.EventFactory},
+ * reached by reflection. On a JVM without Flight Recorder every event is a no-op, and while no recording
+ * has an event enabled, {@link #begin(Type)} costs one check.
+ * <pre>{@code
+ * try (LibraryEvent event = LibraryEvent.begin(LibraryEvent.Type.RESOLVE)) {
+ *     event.set("plugin", pluginName).set("coordinates", coordinates);
+ *     ...
+ * }
+ * }</pre>
+ */
+public class LibraryEvent implements AutoCloseable {
+
+    private static final String CATEGORY = "CraftLib";
+    private static final LibraryEvent DISABLED = new LibraryEvent(null, null);
+
+    private static final Map<Type, Object> FACTORIES = new EnumMap<>(Type.class);
+    private static final Map<Type, Object> EVENT_TYPES = new EnumMap<>(Type.class);
+    private static Method newEventMethod;
+    private static Method isEnabledMethod;
+    private static Method beginMethod;
+    private static Method endMethod;
+    private static Method shouldCommitMethod;
+    private static Method commitMethod;
+    private static Method setMethod;
+
+    static {
+        try {
+            defineEventTypes();
+        } catch (Throwable ignored) {
+            // Flight Recorder is not available, e.g. Java 8 before 8u262
+            FACTORIES.clear();
+            EVENT_TYPES.clear();
+        }
+    }
+
+    public enum Type {
+        /**
+         * Reading the plugin.yml fields of a plugin jar, or finding them in the descriptor cache.
+         */
+        DESCRIPTOR_READ("PluginDescriptorRead", "Plugin Descriptor Read",
+                Field.text("plugin"), Field.text("file"), Field.flag("cached")),
+        /**
+         * Collecting the dependency graph of some coordinates.
+         */
+        COLLECT("DependencyCollect", "Dependency Collect",
+                Field.text("plugin"), Field.text("coordinates")),
+        /**
+         * Collecting and fetching the artifacts of some coordinates.
+         */
+        RESOLVE("DependencyResolve", "Dependency Resolve",
+                Field.text("plugin"), Field.text("coordinates"), Field.count("artifacts")),
+        /**
+         * Downloading one file from a repository.
+         */
+        TRANSFER("ArtifactTransfer", "Artifact Transfer",
+                Field.text("plugin"), Field.text("repository"), Field.text("resource"), Field.bytes("bytes"), Field.flag("succeeded")),
+        /**
+         * Copying one library into a shaded dependency file.
+         */
+        SHADE("LibraryShade", "Library Shade",
+                Field.text("plugin"), Field.text("library"), Field.count("entries")),
+        /**
+         * Handing libraries to a plugin classloader.
+         */
+        INJECT("LibraryInjection", "Library Injection",
+                Field.text("plugin"), Field.text("library"), Field.count("libraries"), Field.text("loader"));
+
+        @Getter
+        private final String name;
+        @Getter
+        private final String label;
+        private final List<Field> fields;
+
+        Type(String name, String label, Field... fields) {
+            this.name = "craftlib." + name;
+            this.label = label;
+            this.fields = Arrays.asList(fields);
+        }
+
+        private int indexOf(String field) {
+            for (int i = 0; i < this.fields.size(); i++) {
+                if (this.fields.get(i).name.equals(field))
+                    return i;
+            }
+            throw new IllegalArgumentException(String.format("%s has no field %s", this.name, field));
+        }
+    }
+
+    private final Type type;
+    private final Object event;
+
+    private LibraryEvent(Type type, Object event) {
+        this.type = type;
+        this.event = event;
+    }
+
+    /**
+     * Starts an event, to be closed when the work it describes ends.
+     *
+     * @param type the event type
+     * @return the running event, or a no-op event when no recording has the type enabled
+     */
+    public static LibraryEvent begin(Type type) {
+        Object factory = FACTORIES.get(type);
+        if (factory == null)
+            return DISABLED;
+
+        try {
+            if (!(boolean) isEnabledMethod.invoke(EVENT_TYPES.get(type)))
+                return DISABLED;
+
+            Object event = newEventMethod.invoke(factory);
+            beginMethod.invoke(event);
+            return new LibraryEvent(type, event);
+        } catch (ReflectiveOperationException e) {
+            return DISABLED;
+        }
+    }
+
+    /**
+     * @return whether Flight Recorder events can be emitted on this JVM
+     */
+    public static boolean isAvailable() {
+        return !FACTORIES.isEmpty();
+    }
+
+    /**
+     * @return whether this event is recorded, i.e. worth computing its field values for
+     */
+    public boolean isEnabled() {
+        return this.event != null;
+    }
+
+    /**
+     * Sets a field of the event. A null value leaves the field empty.
+     *
+     * @param field the field name
+     * @param value the value, matching the field's type
+     * @return this event
+     */
+    public LibraryEvent set(String field, Object value) {
+        if (this.event == null || value == null)
+            return this;
+
+        try {
+            setMethod.invoke(this.event, this.type.indexOf(field), value);
+        } catch (ReflectiveOperationException ignored) {
+        }
+        return this;
+    }
+
+    /**
+     * Ends the event and commits it, unless it is shorter than the recording's threshold.
+     */
+    @Override
+    public void close() {
+        if (this.event == null)
+            return;
+
+        try {
+            endMethod.invoke(this.event);
+            if ((boolean) shouldCommitMethod.invoke(this.event))
+                commitMethod.invoke(this.event);
+        } catch (ReflectiveOperationException ignored) {
+        }
+    }
+
+    private static void defineEventTypes() throws ReflectiveOperationException {
+        Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+        Constructor<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+        Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+        Method create = factoryClass.getMethod("create", List.class, List.class);
+        Method getEventType = factoryClass.getMethod("getEventType");
+
+        for (Type type : Type.values()) {
+            List<Object> annotations = Arrays.asList(
+                    annotationElement.newInstance(annotation("jdk.jfr.Name"), type.name),
+                    annotationElement.newInstance(annotation("jdk.jfr.Label"), type.label),
+                    annotationElement.newInstance(annotation("jdk.jfr.Category"), new String[]{CATEGORY}));
+
+            List<Object> fields = new ArrayList<>();
+            for (Field field : type.fields) {
+                List<Object> fieldAnnotations = new ArrayList<>();
+                fieldAnnotations.add(annotationElement.newInstance(annotation("jdk.jfr.Label"), field.label));
+                if (field.bytes)
+                    fieldAnnotations.add(annotationElement.newInstance(annotation("jdk.jfr.DataAmount"), "BYTES"));
+                fields.add(valueDescriptor.newInstance(field.type, field.name, fieldAnnotations));
+            }
+
+            Object factory = create.invoke(null, annotations, fields);
+            FACTORIES.put(type, factory);
+            EVENT_TYPES.put(type, getEventType.invoke(factory));
+        }
+
+        newEventMethod = factoryClass.getMethod("newEvent");
+        isEnabledMethod = eventTypeClass.getMethod("isEnabled");
+        beginMethod = eventClass.getMethod("begin");
+        endMethod = eventClass.getMethod("end");
+        shouldCommitMethod = eventClass.getMethod("shouldCommit");
+        commitMethod = eventClass.getMethod("commit");
+        setMethod = eventClass.getMethod("set", int.class, Object.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotation(String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+    /**
+     * A field of an event type. Created through its own factories, so initializing {@link Type}
+     * does not initialize {@link LibraryEvent}, whose initialization needs every type.
+     */
+    private static class Field {
+        private final String name;
+        private final String label;
+        private final Class<?> type;
+        private final boolean bytes;
+
+        private Field(String name, Class<?> type, boolean bytes) {
+            this.name = name;
+            this.label = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            this.type = type;
+            this.bytes = bytes;
+        }
+
+        private static Field text(String name) {
+            return new Field(name, String.class, false);
+        }
+
+        private static Field count(String name) {
+            return new Field(name, int.class, false);
+        }
+
+        private static Field bytes(String name) {
+            return new Field(name, long.class, true);
+        }
+
+        private static Field flag(String name) {
+            return new Field(name, boolean.class, false);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.theprogmatheus.craftlib.core.metrics;
+
+import com.github.theprogmatheus.craftlib.core.maven.TransferStatistics;
+import lombok.RequiredArgsConstructor;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects where the library loading spends its time: the duration of every {@link Phase} per owner
+ * (usually a plugin), the artifacts resolved per owner, the hit rate of the caches and the downloads
+ * per repository, taken from the {@link TransferStatistics}.
+ * <p>
+ * The metrics are exposed through JMX as {@value #OBJECT_NAME} once {@link #register() registered},
+ * and as text lines by {@link #report()}.
+ */
+@RequiredArgsConstructor
+public class LibraryMetrics implements LibraryMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.github.theprogmatheus.craftlib:type=LibraryMetrics";
+
+    /**
+     * The owner of the work not done for a single plugin, e.g. shading every library.
+     */
+    public static final String GLOBAL = "*";
+
+    public enum Phase {
+        /**
+         * Reading the plugin descriptors.
+         */
+        SCAN,
+        /**
+         * Collecting the dependency graph.
+         */
+        COLLECT,
+        /**
+         * Fetching the artifacts of the graph.
+         */
+        DOWNLOAD,
+        /**
+         * Hashing library files.
+         */
+        HASH,
+        /**
+         * Building the shaded dependency files.
+         */
+        SHADE,
+        /**
+         * Handing the libraries to the plugin classloaders.
+         */
+        INJECT;
+
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final TransferStatistics transferStatistics;
+    private final Map<String, Map<Phase, AtomicLong>> phaseNanos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> artifactCounts = new ConcurrentHashMap<>();
+    private final Map<String, CacheStatistics> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Starts timing a phase, to be closed when the phase ends.
+     *
+     * @param owner the owner of the work
+     * @param phase the phase
+     * @return the running timing
+     */
+    public Timing time(String owner, Phase phase) {
+        return new Timing(owner, phase, System.nanoTime());
+    }
+
+    public void record(String owner, Phase phase, long nanos) {
+        this.phaseNanos.computeIfAbsent(owner, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(phase, key -> new AtomicLong())
+                .addAndGet(nanos);
+    }
+
+    public void setArtifactCount(String owner, int count) {
+        this.artifactCounts.put(owner, count);
+    }
+
+    /**
+     * Returns the statistics of a cache, creating them on first use.
+     *
+     * @param name the cache name
+     * @return the statistics of the cache
+     */
+    public CacheStatistics getCache(String name) {
+        return this.caches.computeIfAbsent(name, key -> new CacheStatistics());
+    }
+
+    /**
+     * Reports the statistics a cache keeps itself under the given name.
+     *
+     * @param name       the cache name
+     * @param statistics the statistics of the cache
+     */
+    public void registerCache(String name, CacheStatistics statistics) {
+        this.caches.put(name, statistics);
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, replacing the metrics registered by an earlier load.
+     *
+     * @throws JMException if the metrics could not be registered
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        try {
+            server.registerMBean(this, name);
+        } catch (InstanceAlreadyExistsException e) {
+            server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            long nanos = 0;
+            for (Map<Phase, AtomicLong> phases : this.phaseNanos.values()) {
+                AtomicLong value = phases.get(phase);
+                nanos += value != null ? value.get() : 0;
+            }
+            millis.put(phase.getName(), TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+        return millis;
+    }
+
+    @Override
+    public Map<String, Long> getOwnerPhaseMillis() {
+        Map<String, Long> millis = new TreeMap<>();
+        this.phaseNanos.forEach((owner, phases) -> phases.forEach((phase, nanos) ->
+                millis.put(owner + "/" + phase.getName(), TimeUnit.NANOSECONDS.toMillis(nanos.get()))));
+        return millis;
+    }
+
+    @Override
+    public Map<String, Integer> getArtifactCounts() {
+        return new TreeMap<>(this.artifactCounts);
+    }
+
+    @Override
+    public Map<String, Double> getCacheHitRates() {
+        Map<String, Double> rates = new TreeMap<>();
+        this.caches.forEach((name, statistics) -> rates.put(name, statistics.getHitRate()));
+        return rates;
+    }
+
+    @Override
+    public Map<String, Long> getCacheLookups() {
+        Map<String, Long> lookups = new TreeMap<>();
+        this.caches.forEach((name, statistics) -> lookups.put(name, statistics.getLookups()));
+        return lookups;
+    }
+
+    @Override
+    public Map<String, Long> getRepositoryDownloadBytes() {
+        return this.transferStatistics.getRepositoryBytes();
+    }
+
+    @Override
+    public Map<String, Long> getRepositoryDownloadMillis() {
+        return this.transferStatistics.getRepositoryMillis();
+    }
+
+    @Override
+    public long getDownloads() {
+        return this.transferStatistics.getDownloads();
+    }
+
+    @Override
+    public long getDownloadedBytes() {
+        return this.transferStatistics.getBytes();
+    }
+
+    /**
+     * @return the metrics as human-readable lines
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Phases: " + formatPhases(getPhaseMillis()));
+
+        Set<String> owners = new TreeSet<>(this.phaseNanos.keySet());
+        owners.addAll(this.artifactCounts.keySet());
+        for (String owner : owners) {
+            Map<String, Long> millis = new LinkedHashMap<>();
+            Map<Phase, AtomicLong> phases = this.phaseNanos.getOrDefault(owner, Collections.emptyMap());
+            for (Phase phase : Phase.values()) {
+                AtomicLong nanos = phases.get(phase);
+                if (nanos != null)
+                    millis.put(phase.getName(), TimeUnit.NANOSECONDS.toMillis(nanos.get()));
+            }
+            Integer artifacts = this.artifactCounts.get(owner);
+            lines.add(String.format("  %s: %s%s", GLOBAL.equals(owner) ? "(all plugins)" : owner,
+                    artifacts != null ? artifacts + " artifacts, " : "", formatPhases(millis)));
+        }
+
+        lines.add("Downloads: " + this.transferStatistics);
+        Map<String, Long> repositoryMillis = getRepositoryDownloadMillis();
+        getRepositoryDownloadBytes().forEach((repository, bytes) -> lines.add(String.format("  %s: %.2f MB in %s ms",
+                repository, bytes / 1048576.0, repositoryMillis.getOrDefault(repository, 0L))));
+
+        StringJoiner caches = new StringJoiner(", ");
+        new TreeMap<>(this.caches).forEach((name, statistics) -> caches.add(name + " " + statistics));
+        lines.add("Cache hits: " + (caches.length() == 0 ? "none" : caches.toString()));
+        return lines;
+    }
+
+    private static String formatPhases(Map<String, Long> millis) {
+        StringJoiner joiner = new StringJoiner(", ");
+        millis.forEach((phase, value) -> joiner.add(phase + " " + value + " ms"));
+        return joiner.length() == 0 ? "-" : joiner.toString();
+    }
+
+    /**
+     * A running phase timing, recorded when closed.
+     */
+    @RequiredArgsConstructor
+    public class Timing implements AutoCloseable {
+        private final String owner;
+        private final Phase phase;
+        private final long start;
+
+        @Override
+        public void close() {
+            record(this.owner, this.phase, System.nanoTime() - this.start);
+        }
+    }
+}
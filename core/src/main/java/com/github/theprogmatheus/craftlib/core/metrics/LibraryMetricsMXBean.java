@@ -0,0 +1,49 @@
+package com.github.theprogmatheus.craftlib.core.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link LibraryMetrics}, registered as
+ * {@value LibraryMetrics#OBJECT_NAME} in the platform MBean server.
+ */
+public interface LibraryMetricsMXBean {
+
+    /**
+     * @return the total milliseconds spent in each phase, keyed by phase name
+     */
+    Map<String, Long> getPhaseMillis();
+
+    /**
+     * @return the milliseconds spent in each phase for each owner, keyed by {@code owner/phase}
+     */
+    Map<String, Long> getOwnerPhaseMillis();
+
+    /**
+     * @return the number of artifacts resolved for each owner
+     */
+    Map<String, Integer> getArtifactCounts();
+
+    /**
+     * @return the hit rate of each cache, from 0 to 1
+     */
+    Map<String, Double> getCacheHitRates();
+
+    /**
+     * @return the number of lookups of each cache
+     */
+    Map<String, Long> getCacheLookups();
+
+    /**
+     * @return the bytes downloaded from each repository, keyed by repository URL
+     */
+    Map<String, Long> getRepositoryDownloadBytes();
+
+    /**
+     * @return the milliseconds spent downloading from each repository, keyed by repository URL
+     */
+    Map<String, Long> getRepositoryDownloadMillis();
+
+    long getDownloads();
+
+    long getDownloadedBytes();
+}
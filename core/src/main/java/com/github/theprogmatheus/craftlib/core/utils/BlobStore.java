@@ -0,0 +1,176 @@
+package com.github.theprogmatheus.craftlib.core.utils;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressable store of files keyed by their SHA-256 digest, shared by every server of a host.
+ * <p>
+ * {@link #link(File) Linking} a file stores a copy of its content once, as {@code <store>/<ab>/<digest>}, and turns
+ * the file into a hard link to that blob, so identical jars in several libraries folders or shade outputs take the
+ * disk space and page cache of one file. Where hard links are not possible, e.g. across file systems, the file becomes
+ * a symbolic link to the blob instead.
+ * <p>
+ * A blob never shares its storage with the file it was copied from, so replacing a library by a new file, as CraftLib
+ * and the resolver always do, leaves the blob untouched. Links stay writable, so they can be replaced and deleted on
+ * every platform; a library edited in place changes every file linked to the same blob. An existing blob is only
+ * trusted when its size matches the file, and one of another size is stored again.
+ * <p>
+ * Blobs are created atomically and never modified, and files are only ever replaced by moving a complete link
+ * into place, so several processes can link into the same store at once. Blobs are never deleted by CraftLib.
+ */
+public class BlobStore {
+
+    @Getter
+    private final File folder;
+    @Getter
+    private final FileHashCache hashCache;
+    /**
+     * Hits are files whose content already was in the store, misses the ones that added a blob.
+     */
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * @param folder    the store folder
+     * @param hashCache the digests of previously linked files, so unchanged files are not read again
+     */
+    public BlobStore(File folder, FileHashCache hashCache) {
+        this.folder = folder.getAbsoluteFile();
+        this.hashCache = hashCache;
+    }
+
+    /**
+     * Links every given file into the store, skipping the files that do not exist.
+     *
+     * @param files the files to link
+     * @return the number of files turned into a link to an existing blob
+     * @throws IOException if a file could not be read or linked
+     */
+    public int linkAll(Collection<File> files) throws IOException {
+        int linked = 0;
+        for (File file : files) {
+            if (link(file))
+                linked++;
+        }
+        return linked;
+    }
+
+    /**
+     * Stores the content of a file, then replaces the file by a link to the stored blob unless it already is one.
+     *
+     * @param file the file to link
+     * @return whether the file was replaced by a link to a blob already stored, freeing its own copy of the content
+     * @throws IOException if the file could not be read or linked
+     */
+    public boolean link(File file) throws IOException {
+        Path path = file.toPath();
+        if (!file.isFile() || Files.isSymbolicLink(path))
+            return false;
+
+        String hash = FileUtils.hashFile(file, this.hashCache);
+        File blob = getBlob(hash);
+        long size = file.length();
+        boolean stored = blob.isFile() && blob.length() == size;
+        if (!this.statistics.record(stored))
+            createBlob(file, blob);
+        if (!blob.isFile() || Files.isSameFile(path, blob.toPath()))
+            return false;
+
+        Path temp = newTempPath(file);
+        try {
+            try {
+                Files.createLink(temp, blob.toPath());
+            } catch (NoSuchFileException e) {
+                return false;
+            } catch (FileSystemException | UnsupportedOperationException e) {
+                try {
+                    Files.createSymbolicLink(temp, blob.toPath());
+                } catch (FileSystemException | UnsupportedOperationException ignored) {
+                    // neither link kind is supported here, the file keeps its own copy
+                    return false;
+                }
+            }
+            FileUtils.moveAtomically(temp.toFile(), file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (this.hashCache != null)
+            this.hashCache.put(file, file.length(), file.lastModified(), hash);
+        // a new blob is a copy of the file, so only linking to a blob already stored frees space
+        if (!stored)
+            return false;
+        this.savedBytes.addAndGet(size);
+        return true;
+    }
+
+    /**
+     * @param hash the hex encoded SHA-256 digest of the content
+     * @return the blob holding that content, which may not exist
+     */
+    public File getBlob(String hash) {
+        return new File(new File(this.folder, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * @return the bytes freed by files replaced with a link since the store was created
+     */
+    public long getSavedBytes() {
+        return this.savedBytes.get();
+    }
+
+    /**
+     * Writes the digest cache to disk.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    public void save() throws IOException {
+        if (this.hashCache != null)
+            this.hashCache.save();
+    }
+
+    /**
+     * Creates the blob as a copy of the file. A missing blob another process created meanwhile is kept
+     * as it is, while a blob of the wrong size is replaced.
+     */
+    private static void createBlob(File file, File blob) throws IOException {
+        blob.getParentFile().mkdirs();
+        boolean replace = blob.exists();
+        Path temp = newTempPath(blob);
+        try {
+            Files.copy(file.toPath(), temp);
+            if (replace) {
+                FileUtils.moveAtomically(temp.toFile(), blob);
+            } else {
+                try {
+                    // fails when the blob exists, unlike a move
+                    Files.createLink(blob.toPath(), temp);
+                } catch (FileAlreadyExistsException e) {
+                    return;
+                } catch (FileSystemException | UnsupportedOperationException e) {
+                    // no hard links in the store: moving the complete copy into place is still atomic
+                    FileUtils.moveAtomically(temp.toFile(), blob);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path newTempPath(File file) {
+        return new File(file.getParentFile(), file.getName() + "." + UUID.randomUUID() + ".tmp").toPath();
+    }
+}
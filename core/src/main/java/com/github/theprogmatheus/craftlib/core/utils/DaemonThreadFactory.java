@@ -0,0 +1,23 @@
+package com.github.theprogmatheus.craftlib.core.utils;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, so CraftLib worker pools never keep the server process alive.
+ */
+@RequiredArgsConstructor
+public class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
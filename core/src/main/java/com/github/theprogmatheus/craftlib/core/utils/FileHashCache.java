@@ -0,0 +1,115 @@
+package com.github.theprogmatheus.craftlib.core.utils;
+
+import com.github.theprogmatheus.craftlib.core.metrics.CacheStatistics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the SHA-256 digest of files, so unchanged files are never read again.
+ * <p>
+ * A digest is keyed by the file's absolute path and only reused while the file keeps the same size and
+ * modification time, which only costs one stat call per file.
+ */
+public class FileHashCache {
+
+    private static final String HEADER = "# CraftLib file hash cache v1 - generated, do not edit";
+
+    @Getter
+    private final File file;
+    private final Map<String, CachedHash> hashes = new ConcurrentHashMap<>();
+    @Getter
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private FileHashCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the cache from disk. A missing or unreadable cache results in an empty one.
+     *
+     * @param file the cache location
+     * @return the loaded cache
+     */
+    public static FileHashCache load(File file) {
+        FileHashCache cache = new FileHashCache(file);
+        if (!file.isFile())
+            return cache;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\t");
+                if (parts.length != 4)
+                    continue;
+                try {
+                    cache.hashes.put(parts[0], new CachedHash(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+            cache.hashes.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached digest of a file, if the file did not change since it was computed.
+     *
+     * @param file the file
+     * @return the hex encoded digest, or null if it has to be computed
+     */
+    public String get(File file) {
+        CachedHash cached = this.hashes.get(file.getAbsolutePath());
+        if (!this.statistics.record(cached != null && cached.size == file.length() && cached.lastModified == file.lastModified()))
+            return null;
+        return cached.hash;
+    }
+
+    public void put(File file, long size, long lastModified, String hash) {
+        this.hashes.put(file.getAbsolutePath(), new CachedHash(size, lastModified, hash));
+    }
+
+    /**
+     * Writes the cache to disk, replacing the previous one atomically. Entries of deleted files are dropped.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    public synchronized void save() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+            parent.mkdirs();
+
+        File temp = new File(parent, this.file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, CachedHash> entry : new TreeMap<>(this.hashes).entrySet()) {
+                if (!new File(entry.getKey()).isFile())
+                    continue;
+
+                CachedHash cached = entry.getValue();
+                writer.write(entry.getKey() + "\t" + cached.size + "\t" + cached.lastModified + "\t" + cached.hash);
+                writer.write('\n');
+            }
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedHash {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+    }
+}
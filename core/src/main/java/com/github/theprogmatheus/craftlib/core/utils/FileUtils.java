@@ -1,33 +1,158 @@
 package com.github.theprogmatheus.craftlib.core.utils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class FileUtils {
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_HASH_THREADS = 4;
+    /**
+     * A direct buffer per thread, so reading skips the copy through a heap array. Files are never mapped: on
+     * Java 8 a mapping outlives its channel until garbage collected, and Windows refuses to replace or delete
+     * a file that is still mapped.
+     */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE));
+
     public static String hashFiles(Collection<File> files) throws IOException, NoSuchAlgorithmException {
+        return hashFiles(files, null);
+    }
+
+    /**
+     * Hashes the content of the given files, in order.
+     * <p>
+     * Every file is digested on its own, in parallel on a few threads of its own, and the result is the digest
+     * of those per-file digests in the given order. Files whose digest is in the cache, with the same size and
+     * modification time, are not read at all.
+     *
+     * @param files the files to hash
+     * @param cache the digests of previously hashed files, may be null
+     * @return the hex encoded SHA-256 digest
+     */
+    public static String hashFiles(Collection<File> files, FileHashCache cache) throws IOException, NoSuchAlgorithmException {
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
 
-        for (File jar : files) {
-            try (InputStream is = new FileInputStream(jar)) {
-                byte[] buffer = new byte[4096];
-                int read;
-                while ((read = is.read(buffer)) != -1) {
-                    digest.update(buffer, 0, read);
-                }
+        List<String> hashes = new ArrayList<>(files.size());
+        int threads = Math.min(files.size(), Math.min(MAX_HASH_THREADS, Runtime.getRuntime().availableProcessors()));
+        if (threads <= 1) {
+            for (File file : files)
+                hashes.add(hashFile(file, cache));
+        } else {
+            // file reads block, so they stay off the common pool other tasks of the server rely on
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("CraftLib-Hash"));
+            try {
+                List<Future<String>> futures = new ArrayList<>(files.size());
+                for (File file : files)
+                    futures.add(executor.submit(() -> hashFile(file, cache)));
+                for (Future<String> future : futures)
+                    hashes.add(await(future));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        for (String hash : hashes) {
+            digest.update(hash.getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) '\n');
+        }
+        return toHexString(digest.digest());
+    }
+
+    /**
+     * Returns the SHA-256 digest of a file, from the cache when the file did not change.
+     *
+     * @param file  the file to hash
+     * @param cache the digests of previously hashed files, may be null
+     * @return the hex encoded digest
+     */
+    public static String hashFile(File file, FileHashCache cache) throws IOException {
+        String hash = cache != null ? cache.get(file) : null;
+        if (hash != null)
+            return hash;
+
+        // stat before reading, so a file changed meanwhile never matches the cached entry
+        long size = file.length();
+        long lastModified = file.lastModified();
+        hash = toHexString(hashFile(file));
+        if (cache != null)
+            cache.put(file, size, lastModified, hash);
+        return hash;
+    }
+
+    public static byte[] hashFile(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        ByteBuffer buffer = HASH_BUFFER.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
             }
         }
+        return digest.digest();
+    }
+
+    private static String await(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing files");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Could not hash a file", e.getCause());
+        }
+    }
+
+    public static String toHexString(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
 
-        byte[] hash = digest.digest();
-        StringBuilder sb = new StringBuilder();
-        for (byte b : hash) {
-            sb.append(String.format("%02x", b));
+    /**
+     * Moves a file into place atomically where the file system supports it, so readers, including other
+     * processes, see either the previous file or the complete new one.
+     *
+     * @param source the fully written file, usually a temp file in the target folder
+     * @param target the final location, replaced if it exists
+     * @throws IOException if the file could not be moved
+     */
+    public static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        return sb.toString();
     }
 }
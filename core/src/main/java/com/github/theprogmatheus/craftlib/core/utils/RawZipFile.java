@@ -0,0 +1,350 @@
+package com.github.theprogmatheus.craftlib.core.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the central directory of a zip file, giving access to the still compressed data of its entries.
+ * <p>
+ * Only plain single-disk archives are supported; ZIP64 archives are rejected with a {@link ZipException}
+ * so the caller can fall back to regular inflation. Archives preceded by other data, such as a launcher stub,
+ * are read with their offsets shifted by the length of that prefix. Every local header is checked when the
+ * file is opened, so a mismatch is reported before anything was copied.
+ * <p>
+ * Reading a single entry or listing the entry names only scans the central directory, and falls back to
+ * {@link ZipFile} for the archives not supported here.
+ */
+public class RawZipFile implements Closeable {
+
+    public static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    public static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    public static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final FileChannel channel;
+    @Getter
+    private final List<Entry> entries;
+
+    private RawZipFile(FileChannel channel, List<Entry> entries) {
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    public static RawZipFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            CentralDirectory directory = CentralDirectory.locate(channel);
+            List<Entry> entries = new ArrayList<>(directory.count);
+            for (int i = 0, position = 0, next; i < directory.count; i++, position = next) {
+                next = directory.next(position);
+                entries.add(directory.resolve(position));
+            }
+            return new RawZipFile(channel, Collections.unmodifiableList(entries));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads an entry of a zip file, resolving only the local header of that entry.
+     *
+     * @param file the zip file
+     * @param name the entry name, e.g. {@code plugin.yml}
+     * @return the uncompressed entry data, or null if the file has no such entry
+     * @throws IOException if the file could not be read or is not a zip file
+     */
+    public static byte[] readEntry(File file, String name) throws IOException {
+        byte[] rawName = name.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CentralDirectory directory = CentralDirectory.locate(channel);
+            for (int i = 0, position = 0, next; i < directory.count; i++, position = next) {
+                next = directory.next(position);
+                if (directory.nameEquals(position, rawName))
+                    return inflate(channel, directory.resolve(position));
+            }
+            return null;
+        } catch (ZipException e) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                ZipEntry entry = zipFile.getEntry(name);
+                if (entry == null)
+                    return null;
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    return readFully(inputStream);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the entry names of a zip file, in the order of its central directory.
+     *
+     * @param file the zip file
+     * @return the entry names, directories ending with a slash
+     * @throws IOException if the file could not be read or is not a zip file
+     */
+    public static List<String> listEntryNames(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CentralDirectory directory = CentralDirectory.locate(channel);
+            List<String> names = new ArrayList<>(directory.count);
+            for (int i = 0, position = 0, next; i < directory.count; i++, position = next) {
+                next = directory.next(position);
+                names.add(new String(directory.name(position), StandardCharsets.UTF_8));
+            }
+            return names;
+        } catch (ZipException e) {
+            List<String> names = new ArrayList<>();
+            try (ZipFile zipFile = new ZipFile(file)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements())
+                    names.add(entries.nextElement().getName());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Copies the compressed data of an entry, exactly as stored, to the target channel.
+     */
+    public void transferData(Entry entry, WritableByteChannel target) throws IOException {
+        long position = entry.dataOffset;
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            long transferred = this.channel.transferTo(position, remaining, target);
+            if (transferred <= 0)
+                throw new ZipException("Unexpected end of data for " + entry.getName());
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private static byte[] inflate(FileChannel channel, Entry entry) throws IOException {
+        if (entry.compressedSize > Integer.MAX_VALUE || entry.size > Integer.MAX_VALUE)
+            throw new ZipException("Entry too large");
+
+        byte[] compressed = new byte[(int) entry.compressedSize];
+        read(channel, entry.dataOffset, compressed.length).get(compressed);
+        if (entry.method == STORED)
+            return compressed;
+        if (entry.method != DEFLATED)
+            throw new ZipException("Unsupported compression method " + entry.method);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] uncompressed = new byte[(int) entry.size];
+            int inflated = 0;
+            while (inflated < uncompressed.length) {
+                int bytes = inflater.inflate(uncompressed, inflated, uncompressed.length - inflated);
+                if (bytes == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new ZipException("Unexpected end of compressed data");
+                inflated += bytes;
+            }
+            return uncompressed;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new ZipException("Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1)
+            out.write(buffer, 0, bytesRead);
+        return out.toByteArray();
+    }
+
+    /**
+     * The central directory of an archive, read in one piece. Headers are walked by their position in it.
+     */
+    @RequiredArgsConstructor
+    private static class CentralDirectory {
+        private final FileChannel channel;
+        private final long size;
+        private final long prefix;
+        private final int count;
+        private final ByteBuffer headers;
+
+        static CentralDirectory locate(FileChannel channel) throws IOException {
+            long size = channel.size();
+            if (size < END_OF_CENTRAL_DIRECTORY_SIZE)
+                throw new ZipException("Not a zip file");
+
+            // most archives have no comment, so the end record is usually the last 22 bytes
+            int tailSize = END_OF_CENTRAL_DIRECTORY_SIZE;
+            ByteBuffer tail = read(channel, size - tailSize, tailSize);
+            int end = 0;
+            if (tail.getInt(0) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+                tail = read(channel, size - tailSize, tailSize);
+                end = -1;
+                for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+                    if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                        end = i;
+                        break;
+                    }
+                }
+                if (end < 0)
+                    throw new ZipException("End of central directory not found");
+            }
+
+            int count = tail.getShort(end + 10) & 0xFFFF;
+            long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL)
+                throw new ZipException("ZIP64 archives are not supported");
+            // offsets are relative to the start of the archive, which follows any prefixed data
+            long prefix = size - tailSize + end - directorySize - directoryOffset;
+            if (prefix < 0 || directorySize > Integer.MAX_VALUE)
+                throw new ZipException("Invalid central directory");
+
+            return new CentralDirectory(channel, size, prefix, count, read(channel, prefix + directoryOffset, (int) directorySize));
+        }
+
+        /**
+         * Checks the header at the given position, which is 0 for the first one.
+         *
+         * @return the position of the following header
+         */
+        int next(int position) throws ZipException {
+            if (position + CENTRAL_HEADER_SIZE > this.headers.limit() || this.headers.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid central directory header");
+
+            int nameLength = this.headers.getShort(position + 28) & 0xFFFF;
+            int extraLength = this.headers.getShort(position + 30) & 0xFFFF;
+            int commentLength = this.headers.getShort(position + 32) & 0xFFFF;
+            return position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        byte[] name(int position) throws ZipException {
+            int nameLength = this.headers.getShort(position + 28) & 0xFFFF;
+            if (position + CENTRAL_HEADER_SIZE + nameLength > this.headers.limit())
+                throw new ZipException("Invalid central directory header");
+
+            byte[] name = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++)
+                name[i] = this.headers.get(position + CENTRAL_HEADER_SIZE + i);
+            return name;
+        }
+
+        boolean nameEquals(int position, byte[] name) {
+            if ((this.headers.getShort(position + 28) & 0xFFFF) != name.length
+                    || position + CENTRAL_HEADER_SIZE + name.length > this.headers.limit())
+                return false;
+            for (int i = 0; i < name.length; i++) {
+                if (this.headers.get(position + CENTRAL_HEADER_SIZE + i) != name[i])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Reads the local header of the entry at the given position, to find where its data starts.
+         */
+        Entry resolve(int position) throws IOException {
+            byte[] name = name(position);
+            long compressedSize = this.headers.getInt(position + 20) & 0xFFFFFFFFL;
+            long entrySize = this.headers.getInt(position + 24) & 0xFFFFFFFFL;
+            long localHeaderOffset = this.headers.getInt(position + 42) & 0xFFFFFFFFL;
+            if (compressedSize == 0xFFFFFFFFL || entrySize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL)
+                throw new ZipException("ZIP64 entries are not supported");
+
+            // the local name and extra field lengths may differ from the central directory ones
+            ByteBuffer localHeader = read(this.channel, this.prefix + localHeaderOffset, LOCAL_HEADER_SIZE);
+            if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid local header for " + new String(name, StandardCharsets.UTF_8));
+            long dataOffset = this.prefix + localHeaderOffset + LOCAL_HEADER_SIZE
+                    + (localHeader.getShort(26) & 0xFFFF) + (localHeader.getShort(28) & 0xFFFF);
+            if (dataOffset + compressedSize > this.size)
+                throw new ZipException("Invalid data offset for " + new String(name, StandardCharsets.UTF_8));
+
+            return new Entry(
+                    name,
+                    this.headers.getShort(position + 4),
+                    this.headers.getShort(position + 6),
+                    this.headers.getShort(position + 8),
+                    this.headers.getShort(position + 10),
+                    this.headers.getShort(position + 12),
+                    this.headers.getShort(position + 14),
+                    this.headers.getInt(position + 16),
+                    compressedSize,
+                    entrySize,
+                    this.headers.getInt(position + 38),
+                    dataOffset
+            );
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final byte[] rawName;
+        private final short versionMadeBy;
+        private final short versionNeeded;
+        private final short flags;
+        private final short method;
+        private final short time;
+        private final short date;
+        private final int crc;
+        private final long compressedSize;
+        private final long size;
+        private final int externalAttributes;
+        /**
+         * Position of the compressed data in the file, past the local header.
+         */
+        private final long dataOffset;
+
+        public String getName() {
+            return new String(this.rawName, StandardCharsets.UTF_8);
+        }
+
+        public boolean isDirectory() {
+            return this.rawName.length > 0 && this.rawName[this.rawName.length - 1] == '/';
+        }
+    }
+}
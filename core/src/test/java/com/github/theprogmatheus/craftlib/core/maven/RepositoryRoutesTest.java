@@ -0,0 +1,59 @@
+package com.github.theprogmatheus.craftlib.core.maven;
+
+import com.github.theprogmatheus.craftlib.core.LibraryRepository;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryRoutesTest {
+
+    private static final DefaultArtifact GITHUB_ARTIFACT = new DefaultArtifact("com.github.example:library:1.0.0");
+
+    private static RepositoryRoutes newRoutes() {
+        Map<String, List<String>> routes = new LinkedHashMap<>();
+        routes.put("com.github.*", Arrays.asList("JitPack", "Maven Central"));
+        routes.put("org.spigotmc.*", Collections.singletonList("SpigotMC"));
+        return new RepositoryRoutes(routes);
+    }
+
+    private static RemoteRepository find(List<RemoteRepository> repositories, String url) {
+        return repositories.stream()
+                .filter(repository -> LibraryRepository.isSameUrl(repository.getUrl(), url))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No repository for " + url));
+    }
+
+    @Test
+    void routesDefaultRepositories() {
+        RepositoryRoutes routes = newRoutes();
+        List<RemoteRepository> repositories = LibraryRepository.toMavenRepositories(Collections.emptyList());
+
+        assertTrue(routes.acceptArtifact(find(repositories, "https://jitpack.io"), GITHUB_ARTIFACT).isAccepted());
+        assertTrue(routes.acceptArtifact(find(repositories, "https://repo.maven.apache.org/maven2/"), GITHUB_ARTIFACT).isAccepted());
+        assertFalse(routes.acceptArtifact(find(repositories, "https://repo.papermc.io/repository/maven-public/"), GITHUB_ARTIFACT).isAccepted());
+        assertFalse(routes.acceptArtifact(find(repositories, "https://jitpack.io"), new DefaultArtifact("org.spigotmc:spigot-api:1.8.8-R0.1-SNAPSHOT")).isAccepted());
+    }
+
+    @Test
+    void neverFiltersRepositoriesDeclaredByPlugins() {
+        RepositoryRoutes routes = newRoutes();
+        LibraryRepository declared = new LibraryRepository("jitpack.io", URI.create("https://jitpack.io/"));
+        List<RemoteRepository> repositories = LibraryRepository.toMavenRepositories(Collections.singletonList(declared));
+
+        // the plugin's copy replaces the default JitPack entry
+        RemoteRepository jitpack = find(repositories, "https://jitpack.io");
+        assertEquals("jitpack.io", jitpack.getId());
+        assertFalse(LibraryRepository.isDefaultRepository(jitpack));
+        assertTrue(routes.acceptArtifact(jitpack, GITHUB_ARTIFACT).isAccepted());
+        assertTrue(routes.acceptArtifact(jitpack, new DefaultArtifact("org.spigotmc:spigot-api:1.8.8-R0.1-SNAPSHOT")).isAccepted());
+    }
+}
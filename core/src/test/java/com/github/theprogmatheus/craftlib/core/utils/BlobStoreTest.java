@@ -0,0 +1,74 @@
+package com.github.theprogmatheus.craftlib.core.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobStoreTest {
+
+    private static final byte[] LIBRARY = "library content".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    File folder;
+
+    private File createFile(String name, byte[] content) throws IOException {
+        File file = new File(this.folder, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private BlobStore newStore() {
+        return new BlobStore(new File(this.folder, "store"), FileHashCache.load(new File(this.folder, "blobs.hashes")));
+    }
+
+    @Test
+    void linksIdenticalFilesToOneBlob() throws IOException {
+        BlobStore store = newStore();
+        File first = createFile("server-1/library.jar", LIBRARY);
+        File second = createFile("server-2/library.jar", LIBRARY);
+
+        assertFalse(store.link(first));
+        assertTrue(store.link(second));
+
+        assertTrue(Files.isSameFile(first.toPath(), second.toPath()));
+        assertEquals(LIBRARY.length, store.getSavedBytes());
+    }
+
+    @Test
+    void linkedFilesCanBeReplacedAndDeleted() throws IOException {
+        BlobStore store = newStore();
+        File first = createFile("server-1/library.jar", LIBRARY);
+        File second = createFile("server-2/library.jar", LIBRARY);
+        store.linkAll(Arrays.asList(first, second));
+
+        // as a shade jar or a re-downloaded artifact is moved into place
+        File update = createFile("server-1/library.jar.tmp", "updated content".getBytes(StandardCharsets.UTF_8));
+        Files.move(update.toPath(), first.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertArrayEquals(LIBRARY, Files.readAllBytes(second.toPath()));
+
+        assertTrue(second.delete());
+        File blob = store.getBlob(FileUtils.hashFile(createFile("copy.jar", LIBRARY), null));
+        assertArrayEquals(LIBRARY, Files.readAllBytes(blob.toPath()));
+    }
+
+    @Test
+    void storesBlobsOfTheWrongSizeAgain() throws IOException {
+        BlobStore store = newStore();
+        File file = createFile("library.jar", LIBRARY);
+        File blob = store.getBlob(FileUtils.hashFile(file, null));
+        createFile("store/" + blob.getParentFile().getName() + "/" + blob.getName(), "trunc".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(store.link(file));
+        assertArrayEquals(LIBRARY, Files.readAllBytes(blob.toPath()));
+        assertArrayEquals(LIBRARY, Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.theprogmatheus.craftlib.core.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawZipFileTest {
+
+    private static final byte[] PLUGIN_YML = "name: Example\nversion: 1.0.0\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CLASS_DATA = new byte[4096];
+
+    @TempDir
+    File folder;
+
+    private File createZip(String name, byte[] prefix, String comment) throws IOException {
+        File file = new File(this.folder, name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(prefix);
+
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            try (ZipOutputStream zos = new ZipOutputStream(zip)) {
+                zos.putNextEntry(new ZipEntry("com/example/"));
+                zos.putNextEntry(new ZipEntry("com/example/Example.class"));
+                zos.write(CLASS_DATA);
+
+                ZipEntry stored = new ZipEntry("plugin.yml");
+                CRC32 crc = new CRC32();
+                crc.update(PLUGIN_YML);
+                stored.setMethod(ZipEntry.STORED);
+                stored.setSize(PLUGIN_YML.length);
+                stored.setCrc(crc.getValue());
+                zos.putNextEntry(stored);
+                zos.write(PLUGIN_YML);
+                zos.setComment(comment);
+            }
+            out.write(zip.toByteArray());
+        }
+        return file;
+    }
+
+    @Test
+    void readsSingleEntries() throws IOException {
+        File zip = createZip("plain.zip", new byte[0], null);
+
+        assertArrayEquals(PLUGIN_YML, RawZipFile.readEntry(zip, "plugin.yml"));
+        assertArrayEquals(CLASS_DATA, RawZipFile.readEntry(zip, "com/example/Example.class"));
+        assertNull(RawZipFile.readEntry(zip, "missing.yml"));
+    }
+
+    @Test
+    void readsArchivesWithPrefixAndComment() throws IOException {
+        File zip = createZip("prefixed.zip", "#!/bin/sh\nexit 0\n".getBytes(StandardCharsets.US_ASCII), "a comment");
+
+        assertArrayEquals(PLUGIN_YML, RawZipFile.readEntry(zip, "plugin.yml"));
+        assertEquals(Arrays.asList("com/example/", "com/example/Example.class", "plugin.yml"), RawZipFile.listEntryNames(zip));
+    }
+
+    @Test
+    void transfersCompressedData() throws IOException {
+        File zip = createZip("raw.zip", new byte[0], null);
+
+        try (RawZipFile zipFile = RawZipFile.open(zip)) {
+            assertEquals(3, zipFile.getEntries().size());
+            assertTrue(zipFile.getEntries().get(0).isDirectory());
+
+            RawZipFile.Entry pluginYml = zipFile.getEntries().get(2);
+            assertEquals("plugin.yml", pluginYml.getName());
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            zipFile.transferData(pluginYml, Channels.newChannel(data));
+            assertArrayEquals(PLUGIN_YML, data.toByteArray());
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotZips() throws IOException {
+        File file = new File(this.folder, "plain.txt");
+        Files.write(file.toPath(), PLUGIN_YML);
+
+        assertThrows(IOException.class, () -> RawZipFile.readEntry(file, "plugin.yml"));
+        assertThrows(IOException.class, () -> RawZipFile.open(file));
+    }
+}
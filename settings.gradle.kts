@@ -1,3 +1,4 @@
 rootProject.name = "craftlib"
 include("core")
 include("bukkit")
+include("benchmarks")